@@ -0,0 +1,28 @@
+package org.sarge.jove.demo.text;
+
+import java.util.Arrays;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.*;
+import org.openjdk.jmh.runner.options.*;
+
+/**
+ * Runs the benchmark suite with allocation profiling.
+ * <p>
+ * Any arguments are passed to JMH, e.g. a benchmark regex or {@code -rf json} to persist the results for comparison across commits.
+ * <p>
+ * @author Sarge
+ */
+public class Benchmarks {
+	private Benchmarks() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		final String[] filtered = Arrays.stream(args).filter(arg -> !arg.isBlank()).toArray(String[]::new);
+		final Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(filtered))
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,69 @@
+package org.sarge.jove.demo.text;
+
+import java.util.Random;
+
+/**
+ * Benchmark text corpora.
+ * <p>
+ * The text is generated from a fixed vocabulary with a fixed seed such that the corpora are identical across runs.
+ * <p>
+ * @author Sarge
+ */
+public enum Corpus {
+	/**
+	 * Short label, e.g. a button or HUD counter.
+	 */
+	LABEL(16),
+
+	/**
+	 * Paragraph of text.
+	 */
+	PARAGRAPH(1024),
+
+	/**
+	 * Large document (1MB).
+	 */
+	DOCUMENT(1 << 20);
+
+	private static final String[] WORDS = {
+		"the", "quick", "brown", "fox", "jumps", "over", "lazy", "dog", "AVAST", "Wave", "To", "yo",
+		"kerning", "glyph", "texture", "font", "Vulkan", "frame", "buffer", "offset", "[42]", "3.14159",
+		"Hello,", "world!", "WAVE", "LTA", "fjord", "(x, y)", "score:", "1024", "\"quoted\"", "AWAY",
+	};
+
+	private final String text;
+
+	private Corpus(int len) {
+		this.text = generate(len);
+	}
+
+	/**
+	 * @return Corpus text
+	 */
+	public String text() {
+		return text;
+	}
+
+	/**
+	 * Generates text of the given length.
+	 */
+	private static String generate(int len) {
+		final Random random = new Random(42);
+		final StringBuilder str = new StringBuilder(len + 16);
+		int line = 0;
+		while(str.length() < len) {
+			final String word = WORDS[random.nextInt(WORDS.length)];
+			str.append(word);
+			line += word.length() + 1;
+			if(line > 80) {
+				str.append('\n');
+				line = 0;
+			}
+			else {
+				str.append(' ');
+			}
+		}
+		str.setLength(len);
+		return str.toString();
+	}
+}
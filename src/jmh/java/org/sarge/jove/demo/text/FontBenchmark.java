@@ -0,0 +1,85 @@
+package org.sarge.jove.demo.text;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.sarge.jove.model.GlyphFont;
+
+/**
+ * Benchmarks for texture font generation and metadata I/O.
+ * @author Sarge
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Djava.awt.headless=true"})
+public class FontBenchmark {
+	private static final Font FONT = new Font("Dialog", Font.PLAIN, 24);
+
+	/**
+	 * Rasterization state parameterised by whether glyphs are rendered in parallel.
+	 */
+	@State(Scope.Benchmark)
+	public static class Raster {
+		@Param({"false", "true"})
+		private boolean parallel;
+
+		private TextureFontGenerator generator;
+
+		@Setup
+		public void setup() {
+			generator = new TextureFontGenerator().size(512).tiles(16).parallel(parallel);
+		}
+	}
+
+	private FontMetrics metrics;
+	private GlyphFont font;
+	private String yaml;
+
+	@Setup
+	public void setup() throws IOException {
+		// Init font metrics
+		final Graphics2D g = new BufferedImage(1, 1, BufferedImage.TYPE_4BYTE_ABGR).createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+		metrics = g.getFontMetrics(FONT);
+		g.dispose();
+
+		// Generate metadata
+		final var generator = new TextureFontGenerator().size(512).tiles(16);
+		final var instance = generator.new Instance(FONT);
+		instance.image();
+		font = instance.metadata();
+		yaml = write(font);
+	}
+
+	private static String write(GlyphFont font) throws IOException {
+		final var out = new StringWriter();
+		GlyphFont.Loader.write(font, out);
+		return out.toString();
+	}
+
+	@Benchmark
+	public BufferedImage rasterize(Raster raster) {
+		return raster.generator.new Instance(FONT).image();
+	}
+
+	@Benchmark
+	public int[] kerning() {
+		return new KerningEngine(metrics, 0, 256).table();
+	}
+
+	@Benchmark
+	public String writeMetadata() throws IOException {
+		return write(font);
+	}
+
+	@Benchmark
+	public GlyphFont loadMetadata() throws IOException {
+		return new GlyphFont.Loader().load(new StringReader(yaml));
+	}
+}
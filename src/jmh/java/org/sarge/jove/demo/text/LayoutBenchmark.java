@@ -0,0 +1,52 @@
+package org.sarge.jove.demo.text;
+
+import java.awt.Font;
+import java.nio.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.sarge.jove.model.*;
+
+/**
+ * Benchmarks for text layout throughput.
+ * @author Sarge
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Djava.awt.headless=true"})
+public class LayoutBenchmark {
+	@Param
+	private Corpus corpus;
+
+	private GlyphFont font;
+	private GlyphWriter writer;
+	private ByteBuffer bb;
+
+	@Setup
+	public void setup() {
+		// Generate font
+		final var instance = new TextureFontGenerator().size(512).tiles(16).new Instance(new Font("Dialog", Font.PLAIN, 24));
+		instance.image();
+		font = instance.metadata();
+
+		// Init writer
+		writer = new GlyphWriter(instance.glyphs()).scale(2);
+		bb = ByteBuffer.allocateDirect(GlyphWriter.length(corpus.text())).order(ByteOrder.nativeOrder());
+	}
+
+	@Benchmark
+	public Mesh mesh() {
+		return new GlyphMeshBuilder(font)
+				.scale(2)
+				.add(corpus.text())
+				.mesh();
+	}
+
+	@Benchmark
+	public int stream() {
+		return writer.write(corpus.text(), bb, 0);
+	}
+}
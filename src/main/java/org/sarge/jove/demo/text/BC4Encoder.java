@@ -0,0 +1,220 @@
+package org.sarge.jove.demo.text;
+
+import java.util.stream.IntStream;
+
+/**
+ * The <i>BC4 encoder</i> compresses a single-channel image to the BC4 (RGTC1) block compressed format.
+ * <p>
+ * The image is divided into 4x4 blocks each compressed to 8 bytes, i.e. a compression ratio of 2:1 relative to an 8-bit image.
+ * Each block comprises two endpoints and a 3-bit index per pixel into a palette interpolated between the endpoints.
+ * The encoder evaluates both palette modes for each block (eight interpolated values, or six interpolated values plus the extremes) and selects the mode with the lower error.
+ * <p>
+ * Blocks are independent and are encoded in parallel.
+ * Images whose dimensions are not a multiple of the block size are padded by clamping to the edge.
+ * <p>
+ * @see <a href="https://registry.khronos.org/DataFormat/specs/1.3/dataformat.1.3.html#RGTC">RGTC</a>
+ * @author Sarge
+ */
+final class BC4Encoder {
+	/**
+	 * Block size (pixels).
+	 */
+	public static final int BLOCK = 4;
+
+	/**
+	 * Size of a compressed block (bytes).
+	 */
+	public static final int BLOCK_SIZE = 8;
+
+	private BC4Encoder() {
+	}
+
+	/**
+	 * Determines the size of the compressed data for an image.
+	 * @param w Width
+	 * @param h Height
+	 * @return Compressed length
+	 */
+	public static int length(int w, int h) {
+		return blocks(w) * blocks(h) * BLOCK_SIZE;
+	}
+
+	/**
+	 * @return Number of blocks for the given dimension
+	 */
+	private static int blocks(int dim) {
+		return (dim + BLOCK - 1) / BLOCK;
+	}
+
+	/**
+	 * Compresses the given image.
+	 * @param pixels		Single-channel pixels
+	 * @param w				Width
+	 * @param h				Height
+	 * @return Compressed blocks
+	 */
+	public static byte[] encode(byte[] pixels, int w, int h) {
+		if(pixels.length != w * h) throw new IllegalArgumentException("Invalid image length");
+		final int cols = blocks(w);
+		final byte[] data = new byte[length(w, h)];
+		IntStream.range(0, blocks(h)).parallel().forEach(row -> {
+			final int[] block = new int[BLOCK * BLOCK];
+			for(int col = 0; col < cols; ++col) {
+				// Extract block
+				for(int n = 0; n < block.length; ++n) {
+					final int x = Math.min(col * BLOCK + n % BLOCK, w - 1);
+					final int y = Math.min(row * BLOCK + n / BLOCK, h - 1);
+					block[n] = pixels[x + y * w] & 0xFF;
+				}
+
+				// Encode block
+				encode(block, data, (row * cols + col) * BLOCK_SIZE);
+			}
+		});
+		return data;
+	}
+
+	/**
+	 * Encodes a block using the palette mode with the lower error.
+	 */
+	private static void encode(int[] block, byte[] data, int offset) {
+		// Determine endpoints for each mode
+		int min = 255, max = 0;
+		int lo = 255, hi = 0;
+		for(int v : block) {
+			min = Math.min(min, v);
+			max = Math.max(max, v);
+			if((v != 0) && (v != 255)) {
+				lo = Math.min(lo, v);
+				hi = Math.max(hi, v);
+			}
+		}
+		if(lo > hi) {
+			lo = hi = 0;
+		}
+
+		// Select mode
+		final int[] eight = palette(max, min);
+		final int[] six = palette(lo, hi);
+		final boolean mode = (max == min) || (error(block, eight) <= error(block, six));
+		final int[] palette = mode ? eight : six;
+
+		// Write endpoints
+		data[offset] = (byte) palette[0];
+		data[offset + 1] = (byte) palette[1];
+
+		// Write 3-bit indices
+		long bits = 0;
+		for(int n = 0; n < block.length; ++n) {
+			bits |= (long) nearest(block[n], palette) << (3 * n);
+		}
+		for(int n = 0; n < 6; ++n) {
+			data[offset + 2 + n] = (byte) (bits >>> (8 * n));
+		}
+	}
+
+	/**
+	 * Builds the palette for the given endpoints.
+	 * The mode is implied by the order of the endpoints, i.e. eight interpolated values if the first endpoint is larger.
+	 */
+	private static int[] palette(int r0, int r1) {
+		final int[] palette = new int[8];
+		palette[0] = r0;
+		palette[1] = r1;
+		if(r0 > r1) {
+			for(int n = 1; n <= 6; ++n) {
+				palette[n + 1] = ((7 - n) * r0 + n * r1 + 3) / 7;
+			}
+		}
+		else {
+			for(int n = 1; n <= 4; ++n) {
+				palette[n + 1] = ((5 - n) * r0 + n * r1 + 2) / 5;
+			}
+			palette[6] = 0;
+			palette[7] = 255;
+		}
+		return palette;
+	}
+
+	/**
+	 * @return Index of the palette entry nearest to the given value
+	 */
+	private static int nearest(int value, int[] palette) {
+		int index = 0;
+		int best = Integer.MAX_VALUE;
+		for(int n = 0; n < palette.length; ++n) {
+			final int d = Math.abs(palette[n] - value);
+			if(d < best) {
+				best = d;
+				index = n;
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * @return Squared error of the given block for a palette
+	 */
+	private static long error(int[] block, int[] palette) {
+		long error = 0;
+		for(int v : block) {
+			final int d = palette[nearest(v, palette)] - v;
+			error += d * d;
+		}
+		return error;
+	}
+
+	/**
+	 * Decompresses the given blocks.
+	 * @param data			Compressed blocks
+	 * @param w				Width
+	 * @param h				Height
+	 * @return Single-channel pixels
+	 */
+	public static byte[] decode(byte[] data, int w, int h) {
+		if(data.length != length(w, h)) throw new IllegalArgumentException("Invalid compressed length");
+		final int cols = blocks(w);
+		final byte[] pixels = new byte[w * h];
+		for(int row = 0; row < blocks(h); ++row) {
+			for(int col = 0; col < cols; ++col) {
+				// Load palette
+				final int offset = (row * cols + col) * BLOCK_SIZE;
+				final int[] palette = palette(data[offset] & 0xFF, data[offset + 1] & 0xFF);
+
+				// Load indices
+				long bits = 0;
+				for(int n = 0; n < 6; ++n) {
+					bits |= (data[offset + 2 + n] & 0xFFL) << (8 * n);
+				}
+
+				// Decode block
+				for(int n = 0; n < BLOCK * BLOCK; ++n) {
+					final int x = col * BLOCK + n % BLOCK;
+					final int y = row * BLOCK + n / BLOCK;
+					if((x < w) && (y < h)) {
+						final int index = (int) ((bits >>> (3 * n)) & 0x7);
+						pixels[x + y * w] = (byte) palette[index];
+					}
+				}
+			}
+		}
+		return pixels;
+	}
+
+	/**
+	 * Calculates the peak signal-to-noise ratio between two single-channel images.
+	 * @param expected		Original image
+	 * @param actual		Decompressed image
+	 * @return PSNR (dB) or {@link Double#POSITIVE_INFINITY} if the images are identical
+	 */
+	public static double psnr(byte[] expected, byte[] actual) {
+		if(expected.length != actual.length) throw new IllegalArgumentException("Mismatched image lengths");
+		double sum = 0;
+		for(int n = 0; n < expected.length; ++n) {
+			final int d = (expected[n] & 0xFF) - (actual[n] & 0xFF);
+			sum += d * d;
+		}
+		final double mse = sum / expected.length;
+		return 10 * Math.log10(255 * 255 / mse);
+	}
+}
@@ -0,0 +1,141 @@
+package org.sarge.jove.demo.text;
+
+import static org.sarge.lib.util.Check.*;
+
+import java.io.*;
+import java.nio.*;
+import java.util.Arrays;
+
+import org.sarge.jove.platform.vulkan.VkFormat;
+
+/**
+ * A <i>compressed texture</i> is a block compressed image that can be uploaded directly without CPU-side decoding.
+ * <p>
+ * Compressed textures are persisted using the KTX 1.1 container format which is supported by most texture tools.
+ * Only a single mipmap level is supported.
+ * <p>
+ * @see <a href="https://registry.khronos.org/KTX/specs/1.0/ktxspec.v1.html">KTX 1.1</a>
+ * @author Sarge
+ */
+public record CompressedTexture(int width, int height, int internal, byte[] data) {
+	/**
+	 * OpenGL internal format for BC4 unsigned compression.
+	 */
+	public static final int COMPRESSED_RED_RGTC1 = 0x8DBB;
+
+	private static final int RED = 0x1903;
+
+	/**
+	 * Constructor.
+	 * @param width			Width
+	 * @param height		Height
+	 * @param internal		OpenGL internal format
+	 * @param data			Compressed data
+	 */
+	public CompressedTexture {
+		oneOrMore(width);
+		oneOrMore(height);
+		notNull(data);
+	}
+
+	/**
+	 * Maps the internal format of this texture to the corresponding Vulkan format.
+	 * @return Vulkan format
+	 * @throws UnsupportedOperationException if the format is not supported
+	 */
+	public VkFormat format() {
+		return switch(internal) {
+			case COMPRESSED_RED_RGTC1 -> VkFormat.BC4_UNORM_BLOCK;
+			default -> throw new UnsupportedOperationException("Unsupported compressed format: " + Integer.toHexString(internal));
+		};
+	}
+
+	/**
+	 * Loader and writer for a compressed texture.
+	 */
+	public static class Loader {
+		private static final byte[] IDENTIFIER = {(byte) 0xAB, 'K', 'T', 'X', ' ', '1', '1', (byte) 0xBB, '\r', '\n', 0x1A, '\n'};
+		private static final int ENDIANNESS = 0x04030201;
+
+		/**
+		 * Loads a compressed texture.
+		 * @param in Input stream
+		 * @return Compressed texture
+		 * @throws IOException if the texture cannot be loaded or is not a supported KTX texture
+		 */
+		public CompressedTexture load(InputStream in) throws IOException {
+			final ByteBuffer bb = ByteBuffer.wrap(in.readAllBytes());
+			try {
+				// Validate identifier
+				final byte[] id = new byte[IDENTIFIER.length];
+				bb.get(id);
+				if(!Arrays.equals(id, IDENTIFIER)) throw new IOException("Not a KTX texture");
+
+				// Determine byte order
+				bb.order(ByteOrder.LITTLE_ENDIAN);
+				final int endianness = bb.getInt();
+				if(endianness != ENDIANNESS) {
+					bb.order(ByteOrder.BIG_ENDIAN);
+				}
+
+				// Load header
+				final int type = bb.getInt();
+				bb.getInt();			// Type size
+				bb.getInt();			// Format
+				final int internal = bb.getInt();
+				bb.getInt();			// Base internal format
+				final int w = bb.getInt();
+				final int h = bb.getInt();
+				final int depth = bb.getInt();
+				final int elements = bb.getInt();
+				final int faces = bb.getInt();
+				final int levels = bb.getInt();
+				final int kv = bb.getInt();
+				if((type != 0) || (depth != 0) || (elements != 0) || (faces != 1) || (levels > 1)) throw new IOException("Unsupported KTX texture");
+
+				// Skip key-value data
+				bb.position(bb.position() + kv);
+
+				// Load image
+				final int len = bb.getInt();
+				if((len < 0) || (len > bb.remaining())) throw new IOException("Invalid KTX image length");
+				final byte[] data = new byte[len];
+				bb.get(data);
+
+				return new CompressedTexture(w, h, internal, data);
+			}
+			catch(BufferUnderflowException | IllegalArgumentException e) {
+				throw new IOException("Corrupt KTX texture", e);
+			}
+		}
+
+		/**
+		 * Writes a compressed texture.
+		 * @param texture		Compressed texture
+		 * @param out			Output stream
+		 * @throws IOException if the texture cannot be written
+		 */
+		public static void write(CompressedTexture texture, OutputStream out) throws IOException {
+			final int len = texture.data.length;
+			final ByteBuffer bb = ByteBuffer.allocate(IDENTIFIER.length + 13 * Integer.BYTES + Integer.BYTES + len).order(ByteOrder.LITTLE_ENDIAN);
+			bb.put(IDENTIFIER);
+			bb.putInt(ENDIANNESS);
+			bb.putInt(0);					// Type (compressed)
+			bb.putInt(1);					// Type size
+			bb.putInt(0);					// Format (compressed)
+			bb.putInt(texture.internal);
+			bb.putInt(RED);
+			bb.putInt(texture.width);
+			bb.putInt(texture.height);
+			bb.putInt(0);					// Depth
+			bb.putInt(0);					// Array elements
+			bb.putInt(1);					// Faces
+			bb.putInt(1);					// Mipmap levels
+			bb.putInt(0);					// Key-value data
+			bb.putInt(len);
+			bb.put(texture.data);
+			out.write(bb.array());
+			out.flush();
+		}
+	}
+}
@@ -1,13 +1,17 @@
 package org.sarge.jove.demo.text;
 
+import java.nio.*;
 import java.util.List;
 
+import org.sarge.jove.common.Colour;
 import org.sarge.jove.platform.vulkan.*;
-import org.sarge.jove.platform.vulkan.core.LogicalDevice;
+import org.sarge.jove.platform.vulkan.core.*;
 import org.sarge.jove.platform.vulkan.image.*;
+import org.sarge.jove.platform.vulkan.memory.*;
 import org.sarge.jove.platform.vulkan.render.DescriptorSet;
 import org.sarge.jove.platform.vulkan.render.DescriptorSet.*;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.*;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.*;
 
 @Configuration
@@ -20,24 +24,65 @@ public class DescriptorConfiguration {
 			.stage(VkShaderStage.FRAGMENT)
 			.build();
 
+	private final Binding colourBinding = new Binding.Builder()
+			.binding(1)
+			.type(VkDescriptorType.UNIFORM_BUFFER)
+			.stage(VkShaderStage.FRAGMENT)
+			.build();
+
 	@Bean
 	public Layout layout() {
-		return Layout.create(dev, List.of(samplerBinding));
+		return Layout.create(dev, List.of(samplerBinding, colourBinding));
+	}
+
+	@Bean
+	public ResourceBuffer colour(Allocator allocator) {
+		// Create uniform buffer
+		final var props = new MemoryProperties.Builder<VkBufferUsageFlag>()
+				.usage(VkBufferUsageFlag.UNIFORM_BUFFER)
+				.required(VkMemoryProperty.HOST_VISIBLE)
+				.required(VkMemoryProperty.HOST_COHERENT)
+				.optimal(VkMemoryProperty.DEVICE_LOCAL)
+				.build();
+		final VulkanBuffer buffer = VulkanBuffer.create(dev, allocator, 4 * Float.BYTES, props);
+
+		// Write text colour
+		final ByteBuffer bb = buffer.buffer().order(ByteOrder.nativeOrder());
+		final Colour colour = Colour.WHITE;
+		bb.putFloat(colour.red()).putFloat(colour.green()).putFloat(colour.blue()).putFloat(colour.alpha());
+
+		return new ResourceBuffer(buffer, VkDescriptorType.UNIFORM_BUFFER, 0);
 	}
 
 	@Bean
 	public Pool pool() {
+		// Allow for the descriptor set of the glyph cache atlas
 		return new Pool.Builder()
-				.add(VkDescriptorType.COMBINED_IMAGE_SAMPLER, 1)
-				.add(VkDescriptorType.UNIFORM_BUFFER, 1)
-				.max(1)
+				.add(VkDescriptorType.COMBINED_IMAGE_SAMPLER, 2)
+				.add(VkDescriptorType.UNIFORM_BUFFER, 2)
+				.max(2)
 				.build(dev);
 	}
 
 	@Bean
-	public DescriptorSet descriptor(Pool pool, Layout layout, Sampler sampler, View texture) {
+	@Primary
+	public DescriptorSet descriptor(Pool pool, Layout layout, Sampler sampler, View texture, ResourceBuffer colour) {
+		return create(pool, layout, sampler, texture, colour);
+	}
+
+	@Bean("atlas.descriptor")
+	@ConditionalOnProperty({"text.dynamic", "text.cache"})
+	public DescriptorSet atlas(Pool pool, Layout layout, Sampler sampler, @Qualifier("atlas") View atlas, ResourceBuffer colour) {
+		return create(pool, layout, sampler, atlas, colour);
+	}
+
+	/**
+	 * Creates a descriptor set for the given texture.
+	 */
+	private DescriptorSet create(Pool pool, Layout layout, Sampler sampler, View texture, ResourceBuffer colour) {
 		final DescriptorSet set = pool.allocate(layout).iterator().next();
 		set.entry(samplerBinding).set(sampler.resource(texture));
+		set.entry(colourBinding).set(colour);
 		DescriptorSet.update(dev, List.of(set));
 		return set;
 	}
@@ -5,10 +5,11 @@ import org.sarge.jove.control.WindowListener;
 import org.sarge.jove.platform.desktop.*;
 import org.sarge.jove.platform.vulkan.core.Instance;
 import org.sarge.jove.scene.core.RenderLoop;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.*;
 import org.springframework.context.annotation.*;
 
 @Configuration
+@Profile("!offscreen")
 class DesktopConfiguration {
 	@Bean
 	public static Desktop desktop() {
@@ -27,6 +28,11 @@ class DesktopConfiguration {
 				.build(desktop);
 	}
 
+	@Bean
+	public static EventLoop events(Desktop desktop, @Value("${loop.fps:60}") int fps, @Value("${loop.idle:10}") int idle) {
+		return new EventLoop(desktop, fps, idle);
+	}
+
 	@Bean("surface-handle")
 	public static Handle surface(Instance instance, Window window) {
 		return window.surface(instance.handle());
@@ -38,7 +44,7 @@ class DesktopConfiguration {
 	}
 
 	@Autowired
-	void pause(RenderLoop loop, Window window) {
+	void pause(RenderLoop loop, EventLoop events, Window window) {
 		final WindowListener minimised = (__, state) -> {
 			if(state) {
 				loop.pause();
@@ -46,6 +52,7 @@ class DesktopConfiguration {
 			else {
 				loop.restart();
 			}
+			events.idle(state);
 		};
 		window.listener(WindowListener.Type.ICONIFIED, minimised);
 	}
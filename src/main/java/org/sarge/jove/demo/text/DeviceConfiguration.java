@@ -1,41 +1,61 @@
 package org.sarge.jove.demo.text;
 
+import java.util.Optional;
+import java.util.stream.Stream;
+
 import org.sarge.jove.common.Handle;
 import org.sarge.jove.platform.vulkan.VkQueueFlag;
 import org.sarge.jove.platform.vulkan.core.*;
 import org.sarge.jove.platform.vulkan.core.LogicalDevice.RequiredQueue;
 import org.sarge.jove.platform.vulkan.core.PhysicalDevice.Selector;
+import org.sarge.jove.platform.vulkan.memory.Allocator;
 import org.sarge.jove.platform.vulkan.render.Swapchain;
 import org.sarge.jove.platform.vulkan.util.ValidationLayer;
+import org.springframework.beans.factory.annotation.*;
 import org.springframework.context.annotation.*;
 
 @Configuration
 class DeviceConfiguration {
 	private final Selector graphics = Selector.of(VkQueueFlag.GRAPHICS);
-	private final Selector presentation;
+	private final Optional<Selector> presentation;
 
-	public DeviceConfiguration(Handle surface) {
-		presentation = Selector.of(surface);
+	public DeviceConfiguration(Optional<Handle> surface) {
+		presentation = surface.map(Selector::of);
 	}
 
 	@Bean
 	public PhysicalDevice physical(Instance instance) {
-		return PhysicalDevice.devices(instance)
-				.filter(graphics)
-				.filter(presentation)
+		// Select devices that support graphics (and presentation unless rendering offscreen)
+		Stream<PhysicalDevice> devices = PhysicalDevice.devices(instance).filter(graphics);
+		if(presentation.isPresent()) {
+			devices = devices.filter(presentation.get());
+		}
+
+		return devices
 				.findAny()
 				.orElseThrow(() -> new RuntimeException("No suitable physical device available"));
 	}
 
 	@Bean
-	public LogicalDevice device(PhysicalDevice dev) {
-		return new LogicalDevice.Builder(dev)
-				.extension(Swapchain.EXTENSION)
+	public LogicalDevice device(PhysicalDevice dev, @Value("${text.batch:false}") boolean batch) {
+		final var builder = new LogicalDevice.Builder(dev)
 				.layer(ValidationLayer.STANDARD_VALIDATION)
 				.queue(new RequiredQueue(graphics.select(dev)))
-				.queue(new RequiredQueue(presentation.select(dev)))
-				.feature("samplerAnisotropy")
-				.build();
+				.feature("samplerAnisotropy");
+
+		// Enable indirect drawing for batched text
+		if(batch) {
+			builder.feature("multiDrawIndirect");
+			builder.feature("drawIndirectFirstInstance");
+		}
+
+		// Init presentation unless rendering offscreen
+		presentation.ifPresent(selector -> {
+			builder.extension(Swapchain.EXTENSION);
+			builder.queue(new RequiredQueue(selector.select(dev)));
+		});
+
+		return builder.build();
 	}
 
 	private static Command.Pool pool(LogicalDevice dev, Selector selector) {
@@ -49,8 +69,19 @@ class DeviceConfiguration {
 		return pool(dev, graphics);
 	}
 
+	@Bean(destroyMethod = "destroy")
+	public static StagingArena arena(LogicalDevice dev, Allocator allocator, @Value("${staging.capacity:16777216}") long capacity) {
+		return StagingArena.create(dev, allocator, capacity);
+	}
+
+	@Bean(destroyMethod = "destroy")
+	public static UploadBatch uploads(@Qualifier("graphics") Command.Pool graphics, StagingArena arena) {
+		return new UploadBatch(graphics, arena);
+	}
+
 	@Bean
+	@Profile("!offscreen")
 	public Command.Pool presentation(LogicalDevice dev) {
-		return pool(dev, presentation);
+		return pool(dev, presentation.orElseThrow());
 	}
 }
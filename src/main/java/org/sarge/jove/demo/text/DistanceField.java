@@ -0,0 +1,125 @@
+package org.sarge.jove.demo.text;
+
+import java.util.stream.IntStream;
+
+/**
+ * The <i>distance field</i> computes the exact signed Euclidean distance transform of a coverage image.
+ * <p>
+ * The transform is implemented using the separable algorithm described by Felzenszwalb and Huttenlocher, i.e. a one-dimensional squared distance transform applied to each column and then to each row.
+ * The columns (and then rows) are independent and are optionally processed in parallel.
+ * <p>
+ * The resultant distances are negative inside the glyph and positive outside.
+ * <p>
+ * @author Sarge
+ */
+final class DistanceField {
+	private static final float INFINITY = 1e20f;
+
+	private DistanceField() {
+	}
+
+	/**
+	 * Computes the signed distance field of the given coverage image.
+	 * @param coverage		Coverage (pixels with a coverage of at least half are considered inside)
+	 * @param w				Width
+	 * @param h				Height
+	 * @param parallel		Whether to compute the transform in parallel
+	 * @return Signed distances (pixels)
+	 */
+	public static float[] transform(byte[] coverage, int w, int h, boolean parallel) {
+		if(coverage.length != w * h) throw new IllegalArgumentException("Invalid coverage image");
+
+		// Init feature images
+		final float[] outside = new float[w * h];
+		final float[] inside = new float[w * h];
+		for(int n = 0; n < coverage.length; ++n) {
+			final boolean in = (coverage[n] & 0xFF) >= 0x80;
+			outside[n] = in ? 0 : INFINITY;
+			inside[n] = in ? INFINITY : 0;
+		}
+
+		// Transform
+		transform(outside, w, h, parallel);
+		transform(inside, w, h, parallel);
+
+		// Combine
+		final float[] result = new float[w * h];
+		for(int n = 0; n < result.length; ++n) {
+			result[n] = (float) (Math.sqrt(outside[n]) - Math.sqrt(inside[n]));
+		}
+		return result;
+	}
+
+	/**
+	 * Applies the squared distance transform in-place.
+	 */
+	private static void transform(float[] image, int w, int h, boolean parallel) {
+		final IntStream cols = IntStream.range(0, w);
+		(parallel ? cols.parallel() : cols).forEach(x -> new Pass(h).apply(image, x, w, h));
+
+		final IntStream rows = IntStream.range(0, h);
+		(parallel ? rows.parallel() : rows).forEach(y -> new Pass(w).apply(image, y * w, 1, w));
+	}
+
+	/**
+	 * One-dimensional squared distance transform with working storage for a single line.
+	 */
+	private static class Pass {
+		private final double[] f, z;
+		private final int[] v;
+
+		private Pass(int len) {
+			f = new double[len];
+			v = new int[len];
+			z = new double[len + 1];
+		}
+
+		/**
+		 * Transforms a line of the given image.
+		 * @param image		Image
+		 * @param offset	Offset of the first element of the line
+		 * @param stride	Stride between elements
+		 * @param len		Line length
+		 */
+		void apply(float[] image, int offset, int stride, int len) {
+			// Extract line
+			for(int q = 0; q < len; ++q) {
+				f[q] = image[offset + q * stride];
+			}
+
+			// Compute lower envelope of parabolas
+			int k = 0;
+			v[0] = 0;
+			z[0] = -INFINITY;
+			z[1] = INFINITY;
+			for(int q = 1; q < len; ++q) {
+				double s = intersect(q, v[k]);
+				while(s <= z[k]) {
+					--k;
+					s = intersect(q, v[k]);
+				}
+				++k;
+				v[k] = q;
+				z[k] = s;
+				z[k + 1] = INFINITY;
+			}
+
+			// Sample envelope and write line
+			k = 0;
+			for(int q = 0; q < len; ++q) {
+				while(z[k + 1] < q) {
+					++k;
+				}
+				final int dq = q - v[k];
+				image[offset + q * stride] = (float) (dq * dq + f[v[k]]);
+			}
+		}
+
+		/**
+		 * @return Horizontal intersection of the parabolas rooted at the given positions
+		 */
+		private double intersect(int q, int p) {
+			return ((f[q] + q * q) - (f[p] + p * p)) / (2.0 * (q - p));
+		}
+	}
+}
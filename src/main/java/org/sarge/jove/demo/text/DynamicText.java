@@ -0,0 +1,91 @@
+package org.sarge.jove.demo.text;
+
+import static org.sarge.lib.util.Check.*;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * <i>Dynamic text</i> lays out text that changes every frame directly into a {@link DynamicTextBuffer}.
+ * <p>
+ * The text consists of a number of lines that are generated by suppliers, e.g. a counter or a timer.
+ * The lines are laid out by a {@link GlyphWriter} into the region of the buffer for the current frame, i.e. this class is a task of the {@link FrameSequence}.
+ * <p>
+ * Each line is optionally laid out via a {@link LayoutCache}, i.e. lines that do not change are copied from the cache.
+ * <p>
+ * Usage:
+ * <pre>
+ * DynamicText text = new DynamicText(buffer, writer, List.of(() -&gt; "title", () -&gt; "frame " + ++count));
+ * FrameSequence sequence = new FrameSequence(commands, List.of(text));
+ * </pre>
+ * <p>
+ * @author Sarge
+ */
+public class DynamicText implements FrameSequence.Task {
+	private final DynamicTextBuffer buffer;
+	private final GlyphWriter writer;
+	private final List<Supplier<? extends CharSequence>> lines;
+	private final LayoutCache cache;
+	private final float x, y;
+
+	/**
+	 * Constructor.
+	 * @param buffer		Dynamic text buffer
+	 * @param writer		Glyph writer
+	 * @param lines			Text line suppliers
+	 * @param cache			Optional layout cache
+	 */
+	public DynamicText(DynamicTextBuffer buffer, GlyphWriter writer, List<Supplier<? extends CharSequence>> lines, LayoutCache cache) {
+		this.buffer = notNull(buffer);
+		this.writer = notNull(writer);
+		this.lines = List.copyOf(lines);
+		this.cache = cache;
+		this.x = writer.x();
+		this.y = writer.y();
+	}
+
+	/**
+	 * Constructor without a layout cache.
+	 * @param buffer		Dynamic text buffer
+	 * @param writer		Glyph writer
+	 * @param lines			Text line suppliers
+	 */
+	public DynamicText(DynamicTextBuffer buffer, GlyphWriter writer, List<Supplier<? extends CharSequence>> lines) {
+		this(buffer, writer, lines, null);
+	}
+
+	/**
+	 * @return Dynamic text buffer
+	 */
+	public DynamicTextBuffer buffer() {
+		return buffer;
+	}
+
+	/**
+	 * Writes the text lines to the region of the given frame.
+	 * @throws IllegalStateException if the text is too large for the region
+	 */
+	@Override
+	public void update(int index) {
+		final ByteBuffer region = buffer.region(index);
+		final float height = writer.height();
+		int count = 0;
+		for(int n = 0; n < lines.size(); ++n) {
+			// Check line fits the region
+			final CharSequence text = lines.get(n).get();
+			final int offset = count * GlyphWriter.STRIDE;
+			if(offset + GlyphWriter.length(text) > region.capacity()) throw new IllegalStateException("Dynamic text is too large for the buffer: line=" + n);
+
+			// Write line
+			writer.origin(x, y + n * height);
+			if(cache == null) {
+				count += writer.write(text, region, offset);
+			}
+			else {
+				count += cache.write(writer, text.toString(), region, offset);
+			}
+		}
+		buffer.count(index, count);
+	}
+}
@@ -0,0 +1,212 @@
+package org.sarge.jove.demo.text;
+
+import static org.sarge.lib.util.Check.*;
+
+import java.nio.*;
+import java.util.List;
+
+import org.sarge.jove.common.NativeObject;
+import org.sarge.jove.platform.vulkan.*;
+import org.sarge.jove.platform.vulkan.core.*;
+import org.sarge.jove.platform.vulkan.memory.*;
+
+/**
+ * A <i>dynamic text buffer</i> is a persistently-mapped vertex buffer for text that changes every frame, e.g. counters or timers.
+ * <p>
+ * The buffer is allocated from host-visible memory and is divided into a <i>region</i> for each in-flight frame.
+ * Text is written directly to the region for the current frame, i.e. there is no staging buffer or transfer command.
+ * The buffer is mapped once on creation and the regions are allocated up-front, so no allocation is required per frame.
+ * <p>
+ * Each region is preceded by a {@link VkDrawIndirectCommand} that specifies the number of vertices written to that region.
+ * The bind and draw commands for each region are therefore fixed and can be recorded once, see {@link #bind(int)} and {@link #draw(int)}.
+ * <p>
+ * Regions are indexed by the <i>in-flight frame index</i> provided by the caller, see {@link FrameSequence}.
+ * The caller is responsible for only writing to a region once the frame that last rendered it has completed.
+ * <p>
+ * Usage:
+ * <pre>
+ * DynamicTextBuffer buffer = DynamicTextBuffer.create(dev, allocator, 2, 65536);
+ *
+ * // Record commands for each frame
+ * buffer.add(buffer.bind(index)).add(buffer.draw(index));
+ *
+ * // Write text for a frame
+ * ByteBuffer region = buffer.region(index);
+ * int count = ...
+ * buffer.count(index, count);
+ * </pre>
+ * <p>
+ * @author Sarge
+ */
+public class DynamicTextBuffer {
+	/**
+	 * Size of the indirect draw command preceding each region (bytes).
+	 */
+	private static final int COMMAND = 4 * Integer.BYTES;
+
+	/**
+	 * Creates a dynamic text buffer.
+	 * @param dev				Logical device
+	 * @param allocator			Memory allocator
+	 * @param frames			Number of in-flight frames
+	 * @param capacity			Region capacity (bytes) which is rounded up to a multiple of four bytes
+	 * @return Dynamic text buffer
+	 */
+	public static DynamicTextBuffer create(LogicalDevice dev, Allocator allocator, int frames, int capacity) {
+		// Init host-visible memory (device-local memory is preferred if available, e.g. resizable BAR)
+		final var props = new MemoryProperties.Builder<VkBufferUsageFlag>()
+				.usage(VkBufferUsageFlag.VERTEX_BUFFER)
+				.usage(VkBufferUsageFlag.INDIRECT_BUFFER)
+				.required(VkMemoryProperty.HOST_VISIBLE)
+				.required(VkMemoryProperty.HOST_COHERENT)
+				.optimal(VkMemoryProperty.DEVICE_LOCAL)
+				.build();
+
+		// Align regions so that each draw command is at a valid offset
+		final int aligned = align(oneOrMore(capacity));
+
+		// Create buffer
+		final VulkanBuffer buffer = VulkanBuffer.create(dev, allocator, length(oneOrMore(frames), aligned), props);
+		return new DynamicTextBuffer(buffer, frames, aligned);
+	}
+
+	/**
+	 * @return Capacity rounded up to the alignment of an indirect draw command
+	 */
+	private static int align(int capacity) {
+		final int rem = capacity % Integer.BYTES;
+		return rem == 0 ? capacity : capacity + Integer.BYTES - rem;
+	}
+
+	/**
+	 * @return Buffer length for the given number of regions
+	 */
+	private static long length(int frames, int capacity) {
+		return (long) frames * stride(capacity);
+	}
+
+	/**
+	 * @return Length of a region including the preceding draw command
+	 */
+	private static int stride(int capacity) {
+		return COMMAND + capacity;
+	}
+
+	private final VulkanBuffer buffer;
+	private final int capacity;
+	private final ByteBuffer mapped;
+	private final ByteBuffer[] regions;
+	private final Command[] bind;
+	private final Command[] draw;
+
+	/**
+	 * Constructor.
+	 * @param buffer		Host-visible vertex and indirect buffer
+	 * @param frames		Number of in-flight frames
+	 * @param capacity		Region capacity (bytes)
+	 * @throws IllegalArgumentException if the capacity is not a multiple of four bytes or the buffer is too small for the given number of regions
+	 */
+	public DynamicTextBuffer(VulkanBuffer buffer, int frames, int capacity) {
+		if(capacity % Integer.BYTES != 0) throw new IllegalArgumentException("Region capacity must be a multiple of four bytes: " + capacity);
+		if(buffer.length() < length(frames, capacity)) throw new IllegalArgumentException("Buffer is too small for the number of regions");
+		this.buffer = notNull(buffer);
+		this.capacity = oneOrMore(capacity);
+		this.mapped = buffer.buffer().order(ByteOrder.nativeOrder());
+		this.regions = new ByteBuffer[oneOrMore(frames)];
+		this.bind = new Command[frames];
+		this.draw = new Command[frames];
+
+		// Init regions and commands
+		final NativeObject[] handles = NativeObject.array(List.of(buffer));
+		final int stride = stride(capacity);
+		for(int n = 0; n < frames; ++n) {
+			// Init region following the draw command
+			final int offset = n * stride;
+			regions[n] = mapped.slice(offset + COMMAND, capacity).order(ByteOrder.nativeOrder());
+
+			// Init commands
+			final long[] offsets = {offset + COMMAND};
+			bind[n] = (lib, cmd) -> lib.vkCmdBindVertexBuffers(cmd, 0, 1, handles, offsets);
+			draw[n] = (lib, cmd) -> lib.vkCmdDrawIndirect(cmd, buffer, offset, 1, COMMAND);
+
+			// Init empty draw command
+			count(n, 0);
+		}
+	}
+
+	/**
+	 * @return Vertex buffer
+	 */
+	public VulkanBuffer buffer() {
+		return buffer;
+	}
+
+	/**
+	 * @return Number of regions
+	 */
+	public int frames() {
+		return regions.length;
+	}
+
+	/**
+	 * @return Region capacity (bytes)
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * Retrieves the region for the given frame.
+	 * The resultant buffer is positioned at the start of the region and is limited to its capacity.
+	 * @param index Frame index
+	 * @return Region
+	 * @throws ArrayIndexOutOfBoundsException if the index is invalid
+	 */
+	public ByteBuffer region(int index) {
+		return regions[index].clear();
+	}
+
+	/**
+	 * Sets the number of vertices to be drawn from the region for the given frame.
+	 * @param index		Frame index
+	 * @param count		Number of vertices
+	 * @throws ArrayIndexOutOfBoundsException if the index is invalid
+	 */
+	public void count(int index, int count) {
+		if(index >= regions.length) throw new ArrayIndexOutOfBoundsException(index);
+		mapped
+				.position(index * stride(capacity))
+				.putInt(zeroOrMore(count))
+				.putInt(1)
+				.putInt(0)
+				.putInt(0);
+	}
+
+	/**
+	 * Retrieves the command to bind the region for the given frame as vertex buffer zero.
+	 * @param index Frame index
+	 * @return Bind command
+	 * @throws ArrayIndexOutOfBoundsException if the index is invalid
+	 */
+	public Command bind(int index) {
+		return bind[index];
+	}
+
+	/**
+	 * Retrieves the command to draw the vertices in the region for the given frame.
+	 * @param index Frame index
+	 * @return Indirect draw command
+	 * @throws ArrayIndexOutOfBoundsException if the index is invalid
+	 * @see #count(int, int)
+	 */
+	public Command draw(int index) {
+		return draw[index];
+	}
+
+	/**
+	 * Releases this buffer.
+	 */
+	public void destroy() {
+		buffer.destroy();
+	}
+}
@@ -0,0 +1,121 @@
+package org.sarge.jove.demo.text;
+
+import static org.sarge.lib.util.Check.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.sarge.jove.control.Frame;
+import org.sarge.jove.platform.desktop.Desktop;
+
+/**
+ * The <i>event loop</i> polls the desktop for platform events without spinning the main thread.
+ * <p>
+ * Between polls the loop sleeps until the next frame is scheduled or until it is woken by the render thread.
+ * The loop is a frame listener that is signalled by the render loop when each frame completes, i.e. events are processed once per frame while rendering.
+ * The timeout is the target frame period which bounds the input latency if a frame is late.
+ * <p>
+ * When the loop is <i>idle</i> (e.g. the window is minimised and rendering is paused) the desktop is polled at a reduced rate.
+ * <p>
+ * Usage:
+ * <pre>
+ * EventLoop events = new EventLoop(desktop, 60, 10);
+ * loop.add(events);
+ * events.run();
+ * </pre>
+ * <p>
+ * @author Sarge
+ */
+public class EventLoop implements Frame.Listener, Runnable {
+	private final Desktop desktop;
+	private final long period;
+	private final long throttle;
+	private volatile Thread thread;
+	private volatile boolean running = true;
+	private volatile boolean idle;
+	private volatile long polls;
+
+	/**
+	 * Constructor.
+	 * @param desktop		Desktop
+	 * @param fps			Target frame rate
+	 * @param idle			Polling rate when idle
+	 */
+	public EventLoop(Desktop desktop, int fps, int idle) {
+		this.desktop = notNull(desktop);
+		this.period = TimeUnit.SECONDS.toNanos(1) / oneOrMore(fps);
+		this.throttle = TimeUnit.SECONDS.toNanos(1) / oneOrMore(idle);
+	}
+
+	/**
+	 * @return Number of times the desktop has been polled
+	 */
+	public long polls() {
+		return polls;
+	}
+
+	/**
+	 * @return Whether this loop is idle
+	 */
+	public boolean isIdle() {
+		return idle;
+	}
+
+	/**
+	 * Sets whether this loop is idle, i.e. whether events are polled at the reduced rate.
+	 * @param idle Whether idle
+	 */
+	public void idle(boolean idle) {
+		this.idle = idle;
+		wake();
+	}
+
+	/**
+	 * Wakes this loop when a frame has been rendered.
+	 */
+	@Override
+	public void update(Frame frame) {
+		wake();
+	}
+
+	private void wake() {
+		final Thread t = thread;
+		if(t != null) {
+			LockSupport.unpark(t);
+		}
+	}
+
+	/**
+	 * Polls the desktop on the current thread until this loop is stopped.
+	 */
+	@Override
+	public void run() {
+		thread = Thread.currentThread();
+		while(running) {
+			// Process pending events
+			desktop.poll();
+			++polls;
+
+			// Sleep until the next frame or until woken
+			LockSupport.parkNanos(this, idle ? throttle : period);
+		}
+	}
+
+	/**
+	 * Stops this loop.
+	 */
+	public void stop() {
+		running = false;
+		wake();
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this)
+				.append("fps", TimeUnit.SECONDS.toNanos(1) / period)
+				.append("idle", idle)
+				.append("polls", polls)
+				.build();
+	}
+}
@@ -0,0 +1,357 @@
+package org.sarge.jove.demo.text;
+
+import static org.sarge.lib.util.Check.*;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.function.LongConsumer;
+import java.util.logging.Logger;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.sarge.jove.common.Handle;
+import org.sarge.jove.control.Frame;
+import org.sarge.jove.platform.vulkan.*;
+import org.sarge.jove.platform.vulkan.core.*;
+import org.sarge.jove.util.IntegerEnumeration;
+
+import com.sun.jna.ptr.PointerByReference;
+
+/**
+ * The <i>frame profiler</i> collects frame timings for tuning the rendering of text-heavy scenes.
+ * <p>
+ * The profiler records the following timings per frame:
+ * <ul>
+ * <li>{@link Phase#FRAME} the elapsed time between frames</li>
+ * <li>{@link Phase#RENDER} the CPU time spent rendering the frame excluding the following phases, i.e. approximately acquiring the swapchain image, submission and presentation</li>
+ * <li>{@link Phase#RECORD} the CPU time spent updating the per-frame resources and recording the frame, see {@link FrameSequence}</li>
+ * <li>{@link Phase#UPLOAD} the CPU time spent submitting the uploads for the frame, see {@link UploadBatch#submit()}</li>
+ * <li>{@link Phase#GPU} the GPU time between the timestamps written around the rendering commands (optional)</li>
+ * </ul>
+ * <p>
+ * The time spent in a phase that is timed within another phase is excluded from the enclosing phase, i.e. the CPU phases are disjoint.
+ * <p>
+ * Each phase maintains a rolling window of recent samples from which the median, 99th percentile and maximum are derived.
+ * The profiler is a frame listener that is registered with the render loop, the timings are optionally written to a CSV file and a summary is periodically reported.
+ * <p>
+ * @author Sarge
+ */
+public class FrameProfiler implements Frame.Listener {
+	private static final Logger LOG = Logger.getLogger(FrameProfiler.class.getName());
+
+	/**
+	 * Profiled phases.
+	 */
+	public enum Phase {
+		FRAME,
+		RENDER,
+		RECORD,
+		UPLOAD,
+		GPU
+	}
+
+	/**
+	 * Timing statistics.
+	 * @param p50		Median (ms)
+	 * @param p99		99th percentile (ms)
+	 * @param max		Maximum (ms)
+	 */
+	public record Statistics(float p50, float p99, float max) {
+	}
+
+	/**
+	 * Rolling window of timing samples.
+	 */
+	private static class Window {
+		private final long[] samples;
+		private long latest = -1;
+		private int next;
+		private int count;
+
+		private Window(int size) {
+			samples = new long[size];
+		}
+
+		void add(long nanos) {
+			samples[next] = nanos;
+			next = (next + 1) % samples.length;
+			count = Math.min(count + 1, samples.length);
+			latest = nanos;
+		}
+
+		Statistics statistics() {
+			if(count == 0) {
+				return new Statistics(0, 0, 0);
+			}
+			final long[] sorted = Arrays.copyOf(samples, count);
+			Arrays.sort(sorted);
+			return new Statistics(millis(percentile(sorted, 0.5f)), millis(percentile(sorted, 0.99f)), millis(sorted[count - 1]));
+		}
+
+		private static long percentile(long[] sorted, float p) {
+			final int index = (int) Math.ceil(p * sorted.length) - 1;
+			return sorted[Math.max(0, index)];
+		}
+
+		private static float millis(long nanos) {
+			return nanos / 1_000_000f;
+		}
+	}
+
+	private final Map<Phase, Window> windows = new EnumMap<>(Phase.class);
+	private final int report;
+	private Timestamps gpu;
+	private PrintWriter csv;
+	private long last;
+	private long frames;
+	private long nested;
+
+	/**
+	 * Constructor.
+	 * @param window		Size of the rolling window (number of frames)
+	 * @param report		Number of frames between summary reports or zero for none
+	 */
+	public FrameProfiler(int window, int report) {
+		oneOrMore(window);
+		this.report = zeroOrMore(report);
+		for(Phase phase : Phase.values()) {
+			windows.put(phase, new Window(window));
+		}
+	}
+
+	/**
+	 * Enables GPU timestamps.
+	 * @param gpu GPU timestamps
+	 * @see Timestamps
+	 */
+	public void gpu(Timestamps gpu) {
+		this.gpu = notNull(gpu);
+	}
+
+	/**
+	 * Writes frame timings to the given CSV file.
+	 * @param out CSV output
+	 */
+	public void csv(Writer out) {
+		csv = new PrintWriter(out);
+		csv.print("frame");
+		for(Phase phase : Phase.values()) {
+			csv.print("," + phase.name().toLowerCase() + "_ms");
+		}
+		csv.println();
+	}
+
+	/**
+	 * Times the given phase.
+	 * Any phases that are timed by the given task are excluded from the recorded time.
+	 * @param phase		Phase
+	 * @param task		Task
+	 */
+	public void time(Phase phase, Runnable task) {
+		final long outer = nested;
+		nested = 0;
+		final long start = System.nanoTime();
+		try {
+			task.run();
+		}
+		finally {
+			// Record time excluding nested phases
+			final long elapsed = System.nanoTime() - start;
+			windows.get(phase).add(elapsed - nested);
+			nested = outer + elapsed;
+		}
+	}
+
+	/**
+	 * Retrieves the timing statistics for the given phase.
+	 * @param phase Phase
+	 * @return Statistics
+	 */
+	public Statistics statistics(Phase phase) {
+		return windows.get(phase).statistics();
+	}
+
+	@Override
+	public void update(Frame frame) {
+		// Record frame time
+		final long now = System.nanoTime();
+		if(last > 0) {
+			windows.get(Phase.FRAME).add(now - last);
+		}
+		last = now;
+		++frames;
+
+		// Retrieve GPU timings
+		if(gpu != null) {
+			gpu.poll(windows.get(Phase.GPU)::add);
+		}
+
+		// Write CSV
+		if(csv != null) {
+			csv.print(frames);
+			for(Phase phase : Phase.values()) {
+				csv.printf(",%.3f", latest(phase));
+			}
+			csv.println();
+		}
+
+		// Report summary
+		if((report > 0) && (frames % report == 0)) {
+			LOG.info(report());
+		}
+	}
+
+	/**
+	 * @return Latest sample for the given phase (ms) or zero if none
+	 */
+	private float latest(Phase phase) {
+		final long latest = windows.get(phase).latest;
+		return latest < 0 ? 0 : Window.millis(latest);
+	}
+
+	/**
+	 * Closes the CSV output.
+	 */
+	public void destroy() {
+		if(csv != null) {
+			csv.close();
+		}
+	}
+
+	/**
+	 * @return Summary report of the timing statistics
+	 */
+	public String report() {
+		final StringBuilder str = new StringBuilder("frame=").append(frames);
+		for(Phase phase : Phase.values()) {
+			final Statistics stats = statistics(phase);
+			str.append(String.format(" %s[p50=%.2f p99=%.2f max=%.2f]", phase, stats.p50(), stats.p99(), stats.max()));
+		}
+		return str.toString();
+	}
+
+	@Override
+	public String toString() {
+		final var builder = new ToStringBuilder(this).append("frames", frames);
+		for(Phase phase : Phase.values()) {
+			builder.append(phase.name(), statistics(phase));
+		}
+		return builder.build();
+	}
+
+	/**
+	 * A <i>timestamps</i> query pool measures the GPU time of a sequence of commands.
+	 * <p>
+	 * The {@link #begin(int)} and {@link #end(int)} commands write timestamps at the top and bottom of the pipeline around the rendering commands.
+	 * Note that these commands can be recorded once into a secondary command buffer within the render pass.
+	 * <p>
+	 * The pool contains a pair of queries for each in-flight frame indexed by the frame index, i.e. frames in flight do not overwrite each other's queries.
+	 * This class is a {@link FrameSequence.Task} that retrieves the results of the previous use of the queries for a frame without blocking.
+	 * The queries are then reset by a command added to the given upload batch, which is submitted before the work for the frame, i.e. the reset is ordered with respect to the timestamps written by the frame.
+	 * Frames whose results are not available are skipped.
+	 */
+	public static class Timestamps implements FrameSequence.Task {
+		private static final int FLAGS = IntegerEnumeration.reduce(Set.of(VkQueryResultFlag.RESULT_64, VkQueryResultFlag.WITH_AVAILABILITY));
+		private static final int STRIDE = 2 * Long.BYTES;
+
+		private final LogicalDevice dev;
+		private final UploadBatch uploads;
+		private final Handle pool;
+		private final float period;
+		private final boolean[] used;
+		private final ByteBuffer results = ByteBuffer.allocateDirect(2 * STRIDE).order(ByteOrder.nativeOrder());
+		private long elapsed = -1;
+
+		/**
+		 * Constructor.
+		 * @param dev			Logical device
+		 * @param frames		Number of in-flight frames
+		 * @param uploads		Upload batch used to reset the queries
+		 */
+		public Timestamps(LogicalDevice dev, int frames, UploadBatch uploads) {
+			// Create query pool
+			final var info = new VkQueryPoolCreateInfo();
+			info.queryType = VkQueryType.TIMESTAMP;
+			info.queryCount = 2 * oneOrMore(frames);
+			final VulkanLibrary lib = dev.library();
+			final PointerByReference ref = dev.factory().pointer();
+			VulkanLibrary.check(lib.vkCreateQueryPool(dev, info, null, ref));
+			this.dev = dev;
+			this.uploads = notNull(uploads);
+			this.pool = new Handle(ref);
+			this.used = new boolean[frames];
+
+			// Init timestamp period (nanoseconds per tick)
+			this.period = dev.parent().properties().limits().timestampPeriod;
+		}
+
+		/**
+		 * @param index Frame index
+		 * @return Command to write the starting timestamp for the given frame
+		 */
+		public Command begin(int index) {
+			final int query = 2 * index;
+			return (lib, buffer) -> lib.vkCmdWriteTimestamp(buffer, VkPipelineStage.TOP_OF_PIPE, pool, query);
+		}
+
+		/**
+		 * @param index Frame index
+		 * @return Command to write the ending timestamp for the given frame
+		 */
+		public Command end(int index) {
+			final int query = 2 * index + 1;
+			return (lib, buffer) -> lib.vkCmdWriteTimestamp(buffer, VkPipelineStage.BOTTOM_OF_PIPE, pool, query);
+		}
+
+		/**
+		 * Retrieves the results of the previous use of the queries for the given frame and resets the queries.
+		 */
+		@Override
+		public void update(int index) {
+			// Retrieve results
+			if(used[index]) {
+				retrieve(index);
+			}
+
+			// Reset queries before they are written by this frame
+			final int query = 2 * index;
+			uploads.add((lib, buffer) -> lib.vkCmdResetQueryPool(buffer, pool, query, 2));
+			used[index] = true;
+		}
+
+		/**
+		 * Retrieves the elapsed GPU time for the given frame if available.
+		 */
+		private void retrieve(int index) {
+			final VulkanLibrary lib = dev.library();
+			final int result = lib.vkGetQueryPoolResults(dev, pool, 2 * index, 2, results.capacity(), results, STRIDE, FLAGS);
+			if(result != VulkanLibrary.SUCCESS) {
+				return;
+			}
+			if((results.getLong(Long.BYTES) == 0) || (results.getLong(STRIDE + Long.BYTES) == 0)) {
+				return;
+			}
+			final long ticks = results.getLong(STRIDE) - results.getLong(0);
+			elapsed = (long) (ticks * period);
+		}
+
+		/**
+		 * Consumes the most recently retrieved GPU time.
+		 * @param consumer Consumer for the elapsed GPU time (nanoseconds)
+		 */
+		void poll(LongConsumer consumer) {
+			if(elapsed < 0) {
+				return;
+			}
+			consumer.accept(elapsed);
+			elapsed = -1;
+		}
+
+		/**
+		 * Releases the query pool.
+		 */
+		public void destroy() {
+			dev.library().vkDestroyQueryPool(dev, pool, null);
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package org.sarge.jove.demo.text;
+
+import java.util.List;
+
+import org.sarge.jove.platform.vulkan.core.Command;
+
+/**
+ * The <i>frame sequence</i> executes the rendering commands prepared for the in-flight frame that is being composed.
+ * <p>
+ * Per-frame resources, e.g. the regions of a {@link DynamicTextBuffer}, are indexed by the <i>in-flight frame index</i>.
+ * The render task uses its frames in rotation and composes each frame once it has been acquired, i.e. after the previous submission of the same frame has completed.
+ * The frame index is therefore advanced each time this sequence is recorded and it is assumed that the number of frames is the same as the number of frames used by the render task.
+ * <p>
+ * The {@link Task} instances are invoked with the frame index before the commands for that frame are recorded, e.g. to write dynamic vertex data.
+ * <p>
+ * Usage:
+ * <pre>
+ * List&lt;Command&gt; commands = ...		// One per frame
+ * FrameSequence sequence = new FrameSequence(commands, List.of(task));
+ * FrameComposer composer = new FrameComposer(pool, sequence);
+ * </pre>
+ * <p>
+ * @author Sarge
+ */
+public class FrameSequence implements Command.Sequence {
+	/**
+	 * A <i>task</i> updates the per-frame resources for a frame.
+	 */
+	@FunctionalInterface
+	public interface Task {
+		/**
+		 * Updates the resources for the given frame.
+		 * @param index Frame index
+		 */
+		void update(int index);
+	}
+
+	private final List<Command> commands;
+	private final List<Task> tasks;
+	private int index = -1;
+
+	/**
+	 * Constructor.
+	 * @param commands		Rendering command for each frame
+	 * @param tasks			Per-frame tasks
+	 */
+	public FrameSequence(List<Command> commands, List<Task> tasks) {
+		if(commands.isEmpty()) throw new IllegalArgumentException("No rendering commands");
+		this.commands = List.copyOf(commands);
+		this.tasks = List.copyOf(tasks);
+	}
+
+	/**
+	 * @return Number of in-flight frames
+	 */
+	public int frames() {
+		return commands.size();
+	}
+
+	/**
+	 * @return Index of the frame that is being composed
+	 * @throws IllegalStateException if no frame has been composed
+	 */
+	public int index() {
+		if(index < 0) throw new IllegalStateException("No frame has been composed");
+		return index;
+	}
+
+	@Override
+	public void record(Command.Buffer buffer) {
+		// Advance to next frame
+		index = (index + 1) % commands.size();
+
+		// Update per-frame resources
+		for(Task task : tasks) {
+			task.update(index);
+		}
+
+		// Record rendering commands for this frame
+		buffer.add(commands.get(index));
+	}
+}
@@ -0,0 +1,402 @@
+package org.sarge.jove.demo.text;
+
+import static org.sarge.lib.util.Check.*;
+
+import java.awt.image.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import org.sarge.jove.demo.text.StagingArena.Region;
+import org.sarge.jove.platform.vulkan.*;
+import org.sarge.jove.platform.vulkan.core.*;
+import org.sarge.jove.platform.vulkan.image.*;
+import org.sarge.jove.platform.vulkan.pipeline.Barrier;
+
+/**
+ * The <i>glyph cache</i> is a dynamic texture atlas that rasterizes glyphs on demand, e.g. for text containing arbitrary Unicode characters.
+ * <p>
+ * The atlas is divided into a grid of fixed-size <i>slots</i>.
+ * A glyph that is not present in the cache is rasterized using the {@link TextureFontGenerator.Instance} and allocated to a free slot.
+ * When the atlas is full the least-recently-used glyph is evicted and its slot is reused.
+ * Glyphs that have been used during the current frame are never evicted, i.e. the atlas must be large enough for the glyphs of a single frame.
+ * <p>
+ * The cache maintains a single-channel coverage image of the atlas on the host.
+ * Only the slots that have changed since the previous upload are copied to the texture, merged into runs of adjacent slots and batched into a single transfer per frame.
+ * The changed runs are packed into a region of a {@link StagingArena}, i.e. no staging buffer is allocated per upload.
+ * Note that the first upload copies the whole atlas to initialise the texture.
+ * <p>
+ * The cache is a {@link GlyphSource} and can therefore be used to lay out text using a {@link GlyphWriter}.
+ * Kerning is not supported, i.e. the advance of a glyph is independent of the following glyph.
+ * <p>
+ * Usage:
+ * <pre>
+ * GlyphCache cache = new GlyphCache(instance, 1024);
+ *
+ * // Layout text
+ * cache.frame();
+ * for(int ch : text.codePoints().toArray()) {
+ *     cache.quad(ch, quad);
+ *     ...
+ * }
+ *
+ * // Upload new glyphs
+ * if(cache.isDirty()) {
+ *     Command upload = cache.upload(arena, texture);
+ *     ...
+ * }
+ * </pre>
+ * <p>
+ * @author Sarge
+ */
+public class GlyphCache implements GlyphSource {
+	/**
+	 * Offset alignment of a packed run within the staging region, i.e. the minimum alignment of a buffer-to-image copy.
+	 */
+	private static final int RUN_ALIGNMENT = 4;
+
+	/**
+	 * A run of changed slots, i.e. a rectangle of the atlas.
+	 */
+	private record Run(int x, int y, int w, int h) {
+		/**
+		 * @return Aligned length of this run in the staging region
+		 */
+		int length() {
+			final int len = w * h;
+			return (len + RUN_ALIGNMENT - 1) / RUN_ALIGNMENT * RUN_ALIGNMENT;
+		}
+	}
+
+	/**
+	 * Cache entry.
+	 */
+	private static class Entry {
+		private final int slot;
+		private final float advance;
+		private long frame;
+
+		private Entry(int slot, float advance) {
+			this.slot = slot;
+			this.advance = advance;
+		}
+	}
+
+	private final TextureFontGenerator.Instance instance;
+	private final int size;
+	private final int cell;
+	private final int slots;
+	private final byte[] atlas;
+	private final LinkedHashMap<Integer, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+	private final BitSet dirty;
+	private final int[] samples;
+	private int next;
+	private long frame;
+	private boolean init;
+	private long hits, misses, evictions;
+
+	/**
+	 * Constructor.
+	 * @param instance		Font instance used to rasterize glyphs
+	 * @param size			Atlas size (pixels)
+	 * @throws IllegalArgumentException if the atlas is smaller than a glyph tile
+	 */
+	public GlyphCache(TextureFontGenerator.Instance instance, int size) {
+		this.instance = notNull(instance);
+		this.size = oneOrMore(size);
+		this.cell = instance.cell();
+		if(cell > size) throw new IllegalArgumentException("Atlas is smaller than a glyph tile");
+		this.slots = size / cell;
+		this.atlas = new byte[size * size];
+		this.dirty = new BitSet(slots * slots);
+		this.samples = new int[cell * cell];
+	}
+
+	/**
+	 * @return Atlas size (pixels)
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return Maximum number of cached glyphs
+	 */
+	public int capacity() {
+		return slots * slots;
+	}
+
+	/**
+	 * @return Number of cached glyphs
+	 */
+	public int count() {
+		return entries.size();
+	}
+
+	/**
+	 * @return Number of cache hits
+	 */
+	public long hits() {
+		return hits;
+	}
+
+	/**
+	 * @return Number of cache misses, i.e. glyphs that were rasterized
+	 */
+	public long misses() {
+		return misses;
+	}
+
+	/**
+	 * @return Number of evicted glyphs
+	 */
+	public long evictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return Whether the given glyph is cached or can be rasterized by the font instance
+	 */
+	@Override
+	public boolean contains(int codepoint) {
+		return entries.containsKey(codepoint) || instance.contains(codepoint);
+	}
+
+	/**
+	 * @return Line height, i.e. the extent of a glyph tile
+	 */
+	@Override
+	public float height() {
+		return instance.extent();
+	}
+
+	/**
+	 * Starts a new frame.
+	 * Glyphs used in previous frames become candidates for eviction.
+	 */
+	public void frame() {
+		++frame;
+	}
+
+	/**
+	 * Looks up the advance of the given glyph, rasterizing the glyph if it is not present.
+	 * @param codepoint Code-point
+	 * @return Advance
+	 * @throws IllegalStateException if the atlas is full
+	 */
+	@Override
+	public float advance(int codepoint) {
+		return entry(codepoint).advance;
+	}
+
+	/**
+	 * Looks up the advance of the given glyph ignoring the following glyph.
+	 * @throws IllegalStateException if the atlas is full
+	 */
+	@Override
+	public float advance(int codepoint, int next) {
+		return advance(codepoint);
+	}
+
+	/**
+	 * Retrieves the quad for the given glyph, rasterizing the glyph if it is not present.
+	 * The resultant array has the same layout as {@link GlyphMetrics#quad(int, float[])}.
+	 * @param codepoint		Code-point
+	 * @param quad			Returned glyph quad
+	 * @throws IllegalStateException if the atlas is full
+	 */
+	@Override
+	public void quad(int codepoint, float[] quad) {
+		final int slot = entry(codepoint).slot;
+		final float extent = instance.extent();
+		final float uv = cell / (float) size;
+		final int col = slot % slots;
+		final int row = slot / slots;
+		quad[0] = 0;
+		quad[1] = 0;
+		quad[2] = extent;
+		quad[3] = extent;
+		quad[4] = col * uv;
+		quad[5] = row * uv;
+		quad[6] = (col + 1) * uv;
+		quad[7] = (row + 1) * uv;
+	}
+
+	/**
+	 * Looks up or allocates the cache entry for the given glyph and marks it as used in the current frame.
+	 */
+	private Entry entry(int codepoint) {
+		Entry entry = entries.get(codepoint);
+		if(entry == null) {
+			entry = add(codepoint);
+			++misses;
+		}
+		else {
+			++hits;
+		}
+		entry.frame = frame;
+		return entry;
+	}
+
+	/**
+	 * Rasterizes the given glyph and allocates a slot.
+	 */
+	private Entry add(int codepoint) {
+		// Allocate free slot or evict least-recently-used glyph
+		final int slot;
+		if(next < capacity()) {
+			slot = next++;
+		}
+		else {
+			final var itr = entries.values().iterator();
+			final Entry lru = itr.next();
+			if(lru.frame == frame) throw new IllegalStateException("Glyph cache is full for the current frame");
+			itr.remove();
+			slot = lru.slot;
+			++evictions;
+		}
+
+		// Rasterize glyph
+		final BufferedImage tile = instance.tile(codepoint);
+		tile.getAlphaRaster().getSamples(0, 0, cell, cell, 0, samples);
+
+		// Write glyph coverage to atlas
+		final int x = (slot % slots) * cell;
+		final int y = (slot / slots) * cell;
+		for(int r = 0; r < cell; ++r) {
+			final int offset = (y + r) * size + x;
+			for(int c = 0; c < cell; ++c) {
+				atlas[offset + c] = (byte) samples[r * cell + c];
+			}
+		}
+		dirty.set(slot);
+
+		// Register glyph
+		final Entry entry = new Entry(slot, instance.advance(codepoint));
+		entries.put(codepoint, entry);
+		return entry;
+	}
+
+	/**
+	 * @return Whether the atlas has changed since the previous upload
+	 */
+	public boolean isDirty() {
+		return !init || !dirty.isEmpty();
+	}
+
+	/**
+	 * Writes the changed regions of the atlas to the staging arena and creates the command to copy them to the texture.
+	 * <p>
+	 * The changed regions are packed contiguously into a single region allocated from the given arena.
+	 * The caller is responsible for associating the arena with the fence of the submission that uses the returned command, see {@link StagingArena#submit(Fence)}.
+	 * <p>
+	 * The texture is a single-channel image with the same dimensions as the atlas.
+	 * The command transitions the texture to a transfer destination, copies the changed regions and then transitions back to a sampled image.
+	 * <p>
+	 * @param arena			Staging arena
+	 * @param texture		Atlas texture
+	 * @return Upload command
+	 * @throws IllegalStateException if the atlas has not changed
+	 */
+	public Command upload(StagingArena arena, Image texture) {
+		if(!isDirty()) throw new IllegalStateException("Glyph cache has not changed");
+
+		// Determine changed regions
+		final List<Run> runs = new ArrayList<>();
+		final VkImageLayout prev;
+		if(init) {
+			// Merge runs of changed slots within each row
+			prev = VkImageLayout.SHADER_READ_ONLY_OPTIMAL;
+			for(int start = dirty.nextSetBit(0); start >= 0; ) {
+				final int row = start / slots;
+				int end = start + 1;
+				while((end < (row + 1) * slots) && dirty.get(end)) {
+					++end;
+				}
+				runs.add(new Run((start % slots) * cell, row * cell, (end - start) * cell, cell));
+				start = dirty.nextSetBit(end);
+			}
+		}
+		else {
+			// Copy entire atlas to initialise the texture
+			prev = VkImageLayout.UNDEFINED;
+			runs.add(new Run(0, 0, size, size));
+			init = true;
+		}
+		dirty.clear();
+
+		// Allocate staging region
+		final int total = runs.stream().mapToInt(Run::length).sum();
+		final Region staging = arena.allocate(total, StagingArena.ALIGNMENT);
+
+		// Write changed regions and build copy regions
+		final VkBufferImageCopy[] array = new VkBufferImageCopy[runs.size()];
+		int offset = 0;
+		for(int n = 0; n < array.length; ++n) {
+			final Run run = runs.get(n);
+			array[n] = region(staging, offset, texture, run);
+			offset += run.length();
+		}
+
+		// Create upload command
+		return (lib, buffer) -> {
+			// Transition to transfer destination
+			new Barrier.Builder()
+					.source(VkPipelineStage.FRAGMENT_SHADER)
+					.destination(VkPipelineStage.TRANSFER)
+					.image(texture)
+						.oldLayout(prev)
+						.newLayout(VkImageLayout.TRANSFER_DST_OPTIMAL)
+						.source(VkAccess.SHADER_READ)
+						.destination(VkAccess.TRANSFER_WRITE)
+						.build()
+					.build()
+					.record(lib, buffer);
+
+			// Copy changed regions
+			lib.vkCmdCopyBufferToImage(buffer, staging.buffer(), texture, VkImageLayout.TRANSFER_DST_OPTIMAL, array.length, array);
+
+			// Transition to sampled image
+			new Barrier.Builder()
+					.source(VkPipelineStage.TRANSFER)
+					.destination(VkPipelineStage.FRAGMENT_SHADER)
+					.image(texture)
+						.oldLayout(VkImageLayout.TRANSFER_DST_OPTIMAL)
+						.newLayout(VkImageLayout.SHADER_READ_ONLY_OPTIMAL)
+						.source(VkAccess.TRANSFER_WRITE)
+						.destination(VkAccess.SHADER_READ)
+						.build()
+					.build()
+					.record(lib, buffer);
+		};
+	}
+
+	/**
+	 * Writes a run of the atlas to the staging region and creates the corresponding copy region.
+	 */
+	private VkBufferImageCopy region(Region staging, int offset, Image texture, Run run) {
+		// Write rows of the run to staging
+		final ByteBuffer bb = staging.data();
+		final int x = run.x();
+		final int y = run.y();
+		final int w = run.w();
+		final int h = run.h();
+		for(int r = 0; r < h; ++r) {
+			bb.put(offset + r * w, atlas, (y + r) * size + x, w);
+		}
+
+		// Init copy region (tightly packed rows)
+		final var region = new VkBufferImageCopy();
+		region.bufferOffset = staging.offset() + offset;
+		region.bufferRowLength = 0;
+		region.bufferImageHeight = 0;
+		region.imageSubresource = SubResource.toLayers(texture.descriptor());
+		region.imageOffset = new VkOffset3D();
+		region.imageOffset.x = x;
+		region.imageOffset.y = y;
+		region.imageExtent = new VkExtent3D();
+		region.imageExtent.width = w;
+		region.imageExtent.height = h;
+		region.imageExtent.depth = 1;
+		return region;
+	}
+}
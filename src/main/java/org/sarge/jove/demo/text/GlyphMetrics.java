@@ -0,0 +1,305 @@
+package org.sarge.jove.demo.text;
+
+import static org.sarge.lib.util.Check.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+/**
+ * <i>Glyph metrics</i> is a compact alternative to the glyph font metadata where the advances and kerning pairs are held in flat arrays rather than per-glyph objects.
+ * <p>
+ * The metrics can be persisted in a versioned binary format that is loaded from a memory-mapped file or a classpath resource.
+ * The YAML format of {@link org.sarge.jove.model.GlyphFont.Loader} remains the human-readable representation of the same data.
+ * <p>
+ * The glyphs are either arranged as a fixed grid of tiles or are <i>packed</i> into the texture, in which case the metrics also specify the texture region and bearing of each glyph.
+ * <p>
+ * @see KerningTable
+ * @see GlyphSource
+ * @author Sarge
+ */
+public class GlyphMetrics implements GlyphSource {
+	/**
+	 * Number of elements in a glyph quad.
+	 * @see #quad(int, float[])
+	 */
+	public static final int QUAD = 8;
+
+	private final int start;
+	private final int tiles;
+	private final float[] advances;
+	private final KerningTable kerning;
+	private final float[] regions;
+
+	/**
+	 * Constructor.
+	 * @param start			Starting character
+	 * @param tiles			Number of tiles
+	 * @param advances		Glyph advances indexed relative to the starting character
+	 * @param kerning		Kerning pairs
+	 * @throws IllegalArgumentException if the number of advances does not match the number of tiles
+	 */
+	public GlyphMetrics(int start, int tiles, float[] advances, KerningTable kerning) {
+		this(start, tiles, advances, kerning, null);
+	}
+
+	/**
+	 * Constructor for a packed glyph font.
+	 * <p>
+	 * The <i>regions</i> array contains a {@link #QUAD} for each glyph comprising:
+	 * <ol>
+	 * <li>the x and y bearing of the glyph relative to the top-left of its nominal tile</li>
+	 * <li>the width and height of the glyph</li>
+	 * <li>the top-left and bottom-right texture coordinates of the glyph</li>
+	 * </ol>
+	 * The bearing and dimensions have the same units as the glyph advances.
+	 * <p>
+	 * @param start			Starting character
+	 * @param tiles			Number of tiles
+	 * @param advances		Glyph advances indexed relative to the starting character
+	 * @param kerning		Kerning pairs
+	 * @param regions		Glyph regions or {@code null} for a grid of tiles
+	 * @throws IllegalArgumentException if the number of advances does not match the number of tiles or the regions array is invalid
+	 */
+	public GlyphMetrics(int start, int tiles, float[] advances, KerningTable kerning, float[] regions) {
+		if(advances.length != tiles * tiles) throw new IllegalArgumentException("Number of advances does not match the number of tiles");
+		if((regions != null) && (regions.length != advances.length * QUAD)) throw new IllegalArgumentException("Invalid glyph regions");
+		this.start = zeroOrMore(start);
+		this.tiles = oneOrMore(tiles);
+		this.advances = advances.clone();
+		this.kerning = notNull(kerning);
+		this.regions = regions == null ? null : regions.clone();
+	}
+
+	/**
+	 * @return Starting character
+	 */
+	public int start() {
+		return start;
+	}
+
+	/**
+	 * @return Number of tiles
+	 */
+	public int tiles() {
+		return tiles;
+	}
+
+	/**
+	 * @return Line height, i.e. the size of a tile
+	 */
+	@Override
+	public float height() {
+		return 1f / tiles;
+	}
+
+	/**
+	 * @return Number of glyphs
+	 */
+	public int count() {
+		return advances.length;
+	}
+
+	/**
+	 * @return Whether this font contains the given character
+	 */
+	@Override
+	public boolean contains(int ch) {
+		return (ch >= start) && (ch < start + advances.length);
+	}
+
+	/**
+	 * Looks up the advance of the given character.
+	 * @param ch Character
+	 * @return Advance
+	 * @throws ArrayIndexOutOfBoundsException if the character is not present in this font
+	 */
+	@Override
+	public float advance(int ch) {
+		return advances[ch - start];
+	}
+
+	/**
+	 * Looks up the advance of the given character taking into account kerning with the following character.
+	 * @param ch			Character
+	 * @param next			Next character
+	 * @return Kerned advance
+	 * @throws ArrayIndexOutOfBoundsException if the character is not present in this font
+	 */
+	@Override
+	public float advance(int ch, int next) {
+		return kerning.advance(ch, next, advances[ch - start]);
+	}
+
+	/**
+	 * @return Kerning pairs
+	 */
+	public KerningTable kerning() {
+		return kerning;
+	}
+
+	/**
+	 * @return Whether the glyphs are packed rather than a grid of tiles
+	 */
+	public boolean isPacked() {
+		return regions != null;
+	}
+
+	/**
+	 * Retrieves the quad for the given glyph.
+	 * The resultant array contains the bearing, dimensions and texture coordinates of the glyph as described in {@link #GlyphMetrics(int, int, float[], KerningTable, float[])}.
+	 * @param ch			Character
+	 * @param quad			Returned glyph quad
+	 * @throws ArrayIndexOutOfBoundsException if the character is not present in this font or the quad array is too small
+	 */
+	@Override
+	public void quad(int ch, float[] quad) {
+		final int index = ch - start;
+		if(regions == null) {
+			final float size = 1f / tiles;
+			final int col = index % tiles;
+			final int row = index / tiles;
+			quad[0] = 0;
+			quad[1] = 0;
+			quad[2] = size;
+			quad[3] = size;
+			quad[4] = col * size;
+			quad[5] = row * size;
+			quad[6] = (col + 1) * size;
+			quad[7] = (row + 1) * size;
+		}
+		else {
+			System.arraycopy(regions, index * QUAD, quad, 0, QUAD);
+		}
+	}
+
+	/**
+	 * Loader and writer for the binary glyph metrics format.
+	 * <p>
+	 * The format is as follows (big-endian):
+	 * <pre>
+	 * int		magic number
+	 * short	version
+	 * short	flags
+	 * int		start
+	 * int		tiles
+	 * float[]	advances (tiles * tiles)
+	 * float[]	glyph regions (only present if packed)
+	 * int		number of kerning pairs
+	 * long[]	sorted pair keys
+	 * float[]	kerned advances
+	 * </pre>
+	 */
+	public static class Loader {
+		/**
+		 * Magic number, i.e. <code>GLYF</code>.
+		 */
+		public static final int MAGIC = 0x474C5946;
+
+		/**
+		 * Current version of the binary format.
+		 */
+		public static final short VERSION = 2;
+
+		/**
+		 * Flag indicating that the glyphs are packed (version 2 or later).
+		 */
+		public static final short PACKED = 1;
+
+		/**
+		 * Loads glyph metrics from the given memory-mapped file.
+		 * @param path File path
+		 * @return Glyph metrics
+		 * @throws IOException if the file cannot be loaded
+		 */
+		public GlyphMetrics load(Path path) throws IOException {
+			try(final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				final ByteBuffer bb = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				return load(bb);
+			}
+		}
+
+		/**
+		 * Loads glyph metrics from the given input stream, e.g. a classpath resource.
+		 * @param in Input stream
+		 * @return Glyph metrics
+		 * @throws IOException if the data cannot be loaded
+		 */
+		public GlyphMetrics load(InputStream in) throws IOException {
+			return load(ByteBuffer.wrap(in.readAllBytes()));
+		}
+
+		/**
+		 * Loads glyph metrics from the given buffer.
+		 * @param bb Buffer
+		 * @return Glyph metrics
+		 * @throws IOException if the data is not a supported glyph metrics format or is corrupt
+		 */
+		public GlyphMetrics load(ByteBuffer bb) throws IOException {
+			try {
+				// Validate header
+				bb.order(ByteOrder.BIG_ENDIAN);
+				if(bb.getInt() != MAGIC) throw new IOException("Not a glyph metrics file");
+				final short version = bb.getShort();
+				if((version < 1) || (version > VERSION)) throw new IOException("Unsupported glyph metrics version: " + version);
+				final short flags = bb.getShort();
+				final boolean packed = (version >= 2) && ((flags & PACKED) != 0);
+
+				// Load advances
+				final int start = bb.getInt();
+				final int tiles = bb.getInt();
+				if((start < 0) || (tiles < 1)) throw new IOException("Invalid glyph metrics header");
+
+				// Validate length before allocating
+				final long count = (long) tiles * tiles;
+				final long len = count * Float.BYTES * (packed ? 1 + QUAD : 1);
+				if((count > Integer.MAX_VALUE) || (len > bb.remaining())) throw new IOException("Truncated glyph metrics: tiles=" + tiles);
+				final float[] advances = new float[(int) count];
+				bb.asFloatBuffer().get(advances);
+				bb.position(bb.position() + advances.length * Float.BYTES);
+
+				// Load glyph regions
+				float[] regions = null;
+				if(packed) {
+					regions = new float[advances.length * QUAD];
+					bb.asFloatBuffer().get(regions);
+					bb.position(bb.position() + regions.length * Float.BYTES);
+				}
+
+				// Load kerning pairs
+				final KerningTable kerning = KerningTable.read(bb);
+
+				return new GlyphMetrics(start, tiles, advances, kerning, regions);
+			}
+			catch(BufferUnderflowException | IllegalArgumentException e) {
+				throw new IOException("Corrupt glyph metrics", e);
+			}
+		}
+
+		/**
+		 * Writes glyph metrics.
+		 * @param metrics		Glyph metrics
+		 * @param out			Output stream
+		 * @throws IOException if the metrics cannot be written
+		 */
+		public static void write(GlyphMetrics metrics, OutputStream out) throws IOException {
+			final var data = new DataOutputStream(new BufferedOutputStream(out));
+			data.writeInt(MAGIC);
+			data.writeShort(VERSION);
+			data.writeShort(metrics.isPacked() ? PACKED : 0);
+			data.writeInt(metrics.start);
+			data.writeInt(metrics.tiles);
+			for(float advance : metrics.advances) {
+				data.writeFloat(advance);
+			}
+			if(metrics.isPacked()) {
+				for(float f : metrics.regions) {
+					data.writeFloat(f);
+				}
+			}
+			metrics.kerning.write(data);
+			data.flush();
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package org.sarge.jove.demo.text;
+
+/**
+ * A <i>glyph source</i> provides the layout and texture coordinates of the glyphs used to write text.
+ * <p>
+ * All dimensions are relative to the size of the texture font image.
+ * <p>
+ * @see GlyphWriter
+ * @author Sarge
+ */
+public interface GlyphSource {
+	/**
+	 * @param ch Code-point
+	 * @return Whether the given glyph is available from this source
+	 */
+	boolean contains(int ch);
+
+	/**
+	 * @return Line height
+	 */
+	float height();
+
+	/**
+	 * Looks up the advance of the given glyph.
+	 * @param ch Code-point
+	 * @return Advance
+	 */
+	float advance(int ch);
+
+	/**
+	 * Looks up the advance of the given glyph taking into account kerning with the following glyph.
+	 * @param ch			Code-point
+	 * @param next			Next code-point
+	 * @return Kerned advance
+	 */
+	float advance(int ch, int next);
+
+	/**
+	 * Retrieves the quad for the given glyph.
+	 * The resultant array contains the bearing, dimensions and texture coordinates of the glyph, see {@link GlyphMetrics#QUAD}.
+	 * @param ch			Code-point
+	 * @param quad			Returned glyph quad
+	 */
+	void quad(int ch, float[] quad);
+}
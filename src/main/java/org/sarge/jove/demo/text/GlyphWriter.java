@@ -0,0 +1,183 @@
+package org.sarge.jove.demo.text;
+
+import static org.sarge.lib.util.Check.*;
+
+import java.nio.*;
+
+/**
+ * The <i>glyph writer</i> is a streaming alternative to the glyph mesh builder that writes text vertices directly to a buffer.
+ * <p>
+ * Each glyph is written as two triangles with the same interleaved vertex layout as the mesh, i.e. a vec3 position and a vec2 texture coordinate.
+ * The buffer is typically a direct or mapped buffer such as a region of a {@link DynamicTextBuffer}.
+ * The glyphs are looked up from a {@link GlyphSource}, i.e. either static {@link GlyphMetrics} or a dynamic {@link GlyphCache}.
+ * <p>
+ * The writer does not allocate per character or per invocation and is intended for text that changes every frame.
+ * Note that the writer uses working storage and is therefore not thread-safe.
+ * <p>
+ * Usage:
+ * <pre>
+ * GlyphWriter writer = new GlyphWriter(metrics).scale(2);
+ * ByteBuffer region = buffer.region(index);
+ * int count = writer.write(text, region, 0);
+ * </pre>
+ * <p>
+ * @author Sarge
+ */
+public class GlyphWriter {
+	/**
+	 * Number of vertices per glyph.
+	 */
+	public static final int VERTICES = 6;
+
+	/**
+	 * Size of a vertex (bytes).
+	 */
+	public static final int STRIDE = (3 + 2) * Float.BYTES;
+
+	private final GlyphSource glyphs;
+	private final float[] quad = new float[GlyphMetrics.QUAD];
+	private float scale = 1;
+	private float x = -1, y = -1;
+
+	/**
+	 * Constructor.
+	 * @param glyphs Glyph source
+	 */
+	public GlyphWriter(GlyphSource glyphs) {
+		this.glyphs = notNull(glyphs);
+	}
+
+	/**
+	 * @return Glyph source
+	 */
+	public GlyphSource glyphs() {
+		return glyphs;
+	}
+
+	/**
+	 * @return Scale
+	 */
+	public float scale() {
+		return scale;
+	}
+
+	/**
+	 * @return Text origin X
+	 */
+	public float x() {
+		return x;
+	}
+
+	/**
+	 * @return Text origin Y
+	 */
+	public float y() {
+		return y;
+	}
+
+	/**
+	 * @return Line height
+	 */
+	public float height() {
+		return scale * glyphs.height();
+	}
+
+	/**
+	 * Sets the scale of the glyphs (default is one).
+	 * @param scale Scale
+	 */
+	public GlyphWriter scale(float scale) {
+		if(scale <= 0) throw new IllegalArgumentException("Scale must be positive");
+		this.scale = scale;
+		return this;
+	}
+
+	/**
+	 * Sets the origin of the text (default is the top-left of the viewport).
+	 * @param x		X
+	 * @param y		Y
+	 */
+	public GlyphWriter origin(float x, float y) {
+		this.x = x;
+		this.y = y;
+		return this;
+	}
+
+	/**
+	 * Determines the buffer size required for the given text.
+	 * @param text Text
+	 * @return Maximum length of the vertex data (bytes)
+	 */
+	public static int length(CharSequence text) {
+		return text.length() * VERTICES * STRIDE;
+	}
+
+	/**
+	 * Writes the vertices for the given text.
+	 * <p>
+	 * Vertices are written at the given offset using absolute operations, i.e. the position of the buffer is unchanged.
+	 * Lines are delimited by the newline character.
+	 * Characters that are not available from the glyph source are ignored.
+	 * Note that the text is iterated by code-point, i.e. supplementary characters are supported by a glyph source that contains them.
+	 * <p>
+	 * @param text			Text
+	 * @param bb			Buffer
+	 * @param offset		Buffer offset (bytes)
+	 * @return Number of vertices written
+	 * @throws IndexOutOfBoundsException if the buffer is too small
+	 */
+	public int write(CharSequence text, ByteBuffer bb, int offset) {
+		final float height = height();
+		final int len = text.length();
+		float cx = x, cy = y;
+		int pos = offset;
+		for(int n = 0; n < len; ) {
+			// Start new line
+			final int ch = Character.codePointAt(text, n);
+			n += Character.charCount(ch);
+			if(ch == '\n') {
+				cx = x;
+				cy += height;
+				continue;
+			}
+
+			// Skip missing glyphs
+			if(!glyphs.contains(ch)) {
+				continue;
+			}
+
+			// Determine glyph bounds
+			glyphs.quad(ch, quad);
+			final float left = cx + quad[0] * scale;
+			final float top = cy + quad[1] * scale;
+			final float right = left + quad[2] * scale;
+			final float bottom = top + quad[3] * scale;
+
+			// Write triangles
+			pos = vertex(bb, pos, left, top, quad[4], quad[5]);
+			pos = vertex(bb, pos, left, bottom, quad[4], quad[7]);
+			pos = vertex(bb, pos, right, top, quad[6], quad[5]);
+			pos = vertex(bb, pos, right, top, quad[6], quad[5]);
+			pos = vertex(bb, pos, left, bottom, quad[4], quad[7]);
+			pos = vertex(bb, pos, right, bottom, quad[6], quad[7]);
+
+			// Advance to next glyph
+			final float advance = (n < len) ? glyphs.advance(ch, Character.codePointAt(text, n)) : glyphs.advance(ch);
+			cx += advance * scale;
+		}
+		return (pos - offset) / STRIDE;
+	}
+
+	/**
+	 * Writes a vertex.
+	 * @return Next buffer offset
+	 */
+	private static int vertex(ByteBuffer bb, int pos, float x, float y, float u, float v) {
+		bb.putFloat(pos, x);
+		bb.putFloat(pos + 4, y);
+		bb.putFloat(pos + 8, 0);
+		bb.putFloat(pos + 12, u);
+		bb.putFloat(pos + 16, v);
+		return pos + STRIDE;
+	}
+}
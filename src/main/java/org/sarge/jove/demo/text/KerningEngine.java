@@ -0,0 +1,119 @@
+package org.sarge.jove.demo.text;
+
+import static org.sarge.lib.util.Check.*;
+
+import java.awt.*;
+import java.awt.font.*;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The <i>kerning engine</i> extracts the kerning pairs for a range of characters in bulk.
+ * <p>
+ * Rather than measuring every character pair individually, each <i>row</i> of the pair table (i.e. a given left-hand character) is laid out as a single glyph vector comprising the interleaved sequence <code>L R1 L R2 L R3...</code>.
+ * Candidate kerning pairs are those where the position of the right-hand glyph differs from the nominal advance of the left-hand glyph.
+ * Candidates are then confirmed against {@link FontMetrics#stringWidth(String)} so that the resultant pairs are identical to measuring each pair in isolation.
+ * <p>
+ * Rows are processed in parallel and the results are written to a dense pair table indexed by <code>left * count + right</code> relative to the starting character.
+ * Entries in the table are the kerned advance (in pixels) of the left-hand character or {@link #NONE} if the pair is not kerned.
+ * <p>
+ * Note that kerning is only applied if the font has been derived with the {@link TextAttribute#KERNING} attribute.
+ * <p>
+ * @author Sarge
+ */
+class KerningEngine {
+	/**
+	 * Table entry for a pair that is not kerned.
+	 */
+	public static final int NONE = Integer.MIN_VALUE;
+
+	private final Font font;
+	private final FontMetrics metrics;
+	private final FontRenderContext context;
+	private final int start;
+	private final int count;
+
+	/**
+	 * Constructor.
+	 * @param metrics		Font metrics
+	 * @param start			Starting character
+	 * @param count			Number of characters
+	 */
+	public KerningEngine(FontMetrics metrics, int start, int count) {
+		this.metrics = notNull(metrics);
+		this.font = metrics.getFont();
+		this.context = metrics.getFontRenderContext();
+		this.start = zeroOrMore(start);
+		this.count = oneOrMore(count);
+	}
+
+	/**
+	 * Extracts the kerning pair table.
+	 * @return Dense kerning pair table
+	 */
+	public int[] table() {
+		final int[] table = new int[count * count];
+		Arrays.fill(table, NONE);
+		IntStream.range(0, count).parallel().forEach(row -> row(row, table));
+		return table;
+	}
+
+	/**
+	 * Extracts the kerning pairs for the given row of the table, i.e. the left-hand character of each pair.
+	 */
+	private void row(int row, int[] table) {
+		// Ignore non-text characters
+		final char left = (char) (start + row);
+		if(!isValid(left)) {
+			return;
+		}
+
+		// Build interleaved character sequence for this row
+		final char[] chars = new char[count * 2];
+		int len = 0;
+		for(int n = 0; n < count; ++n) {
+			final char right = (char) (start + n);
+			if(isValid(right)) {
+				chars[len++] = left;
+				chars[len++] = right;
+			}
+		}
+		if(len == 0) {
+			return;
+		}
+
+		// Layout row
+		final GlyphVector vector = font.layoutGlyphVector(context, chars, 0, len, Font.LAYOUT_LEFT_TO_RIGHT);
+		final boolean mapped = vector.getNumGlyphs() == len;
+		final float[] pos = mapped ? vector.getGlyphPositions(0, len + 1, null) : null;
+		final float advance = mapped ? vector.getGlyphMetrics(0).getAdvanceX() : 0;
+
+		// Determine kerning pairs
+		final int offset = row * count;
+		for(int n = 0; n < len; n += 2) {
+			// Skip pairs that are not candidates for kerning
+			// Note that if the layout is not a simple one-to-one glyph mapping (e.g. ligatures) each pair is measured explicitly
+			if(mapped) {
+				final float gap = pos[(n + 1) * 2] - pos[n * 2];
+				if(gap == advance) {
+					continue;
+				}
+			}
+
+			// Confirm pair and determine the kerned advance of the left-hand character
+			final char right = chars[n + 1];
+			final int total = metrics.stringWidth(new String(chars, n, 2));
+			final int w = metrics.charWidth(right);
+			if(total != metrics.charWidth(left) + w) {
+				table[offset + right - start] = total - w;
+			}
+		}
+	}
+
+	/**
+	 * @return Whether this given character is eligible for kerning
+	 */
+	static boolean isValid(int ch) {
+		return Character.isLetterOrDigit(ch) && !Character.isWhitespace(ch);
+	}
+}
@@ -0,0 +1,273 @@
+package org.sarge.jove.demo.text;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * A <i>kerning table</i> is a compact, boxing-free representation of the kerning pairs of a glyph font.
+ * <p>
+ * Each pair is packed into a <code>long</code> key comprising the left-hand and right-hand code-points.
+ * The keys are sorted and looked up by binary search, with the kerned advances held in a parallel array.
+ * <p>
+ * Usage:
+ * <pre>
+ * KerningTable table = new KerningTable.Builder()
+ *     .add('A', 'V', 0.025f)
+ *     .build();
+ *
+ * float advance = table.advance('A', 'V', 0.033f);
+ * </pre>
+ * @author Sarge
+ */
+public class KerningTable {
+	/**
+	 * Empty kerning table.
+	 */
+	public static final KerningTable EMPTY = new KerningTable(new long[0], new float[0]);
+
+	private static final int BITS = 21;
+	private static final long MASK = (1L << BITS) - 1;
+
+	/**
+	 * Packs a kerning pair.
+	 * @param left		Left-hand character
+	 * @param right		Right-hand character
+	 * @return Pair key
+	 */
+	static long key(int left, int right) {
+		return ((left & MASK) << BITS) | (right & MASK);
+	}
+
+	/**
+	 * Creates a kerning table from a dense pair table as generated by the {@link KerningEngine}.
+	 * @param dense			Dense pair table
+	 * @param start			Starting character
+	 * @param count			Number of characters
+	 * @param size			Texture size used to normalise the kerned advances
+	 * @return Kerning table
+	 */
+	static KerningTable of(int[] dense, int start, int count, float size) {
+		if(dense.length != count * count) throw new IllegalArgumentException("Invalid dense table length");
+
+		// Count pairs
+		int pairs = 0;
+		for(int k : dense) {
+			if(k != KerningEngine.NONE) {
+				++pairs;
+			}
+		}
+
+		// Pack pairs (note that the dense table is already ordered by pair)
+		final long[] keys = new long[pairs];
+		final float[] advances = new float[pairs];
+		int index = 0;
+		for(int n = 0; n < dense.length; ++n) {
+			if(dense[n] == KerningEngine.NONE) {
+				continue;
+			}
+			keys[index] = key(start + n / count, start + n % count);
+			advances[index] = dense[n] / size;
+			++index;
+		}
+
+		return new KerningTable(keys, advances);
+	}
+
+	private final long[] keys;
+	private final float[] advances;
+
+	/**
+	 * Constructor.
+	 * @param keys			Sorted pair keys
+	 * @param advances		Kerned advances
+	 */
+	KerningTable(long[] keys, float[] advances) {
+		if(keys.length != advances.length) throw new IllegalArgumentException("Mismatched kerning table");
+		this.keys = keys;
+		this.advances = advances;
+	}
+
+	/**
+	 * @return Number of kerning pairs
+	 */
+	public int size() {
+		return keys.length;
+	}
+
+	/**
+	 * @return Whether the given pair is kerned
+	 */
+	public boolean contains(int left, int right) {
+		return Arrays.binarySearch(keys, key(left, right)) >= 0;
+	}
+
+	/**
+	 * Looks up the advance of the given left-hand character when followed by the right-hand character.
+	 * @param left			Left-hand character
+	 * @param right			Right-hand character
+	 * @param advance		Default advance if the pair is not kerned
+	 * @return Kerned advance
+	 */
+	public float advance(int left, int right, float advance) {
+		final int index = Arrays.binarySearch(keys, key(left, right));
+		if(index < 0) {
+			return advance;
+		}
+		else {
+			return advances[index];
+		}
+	}
+
+	/**
+	 * Helper - Enumerates the kerning pairs of this table.
+	 * @param visitor Pair visitor
+	 */
+	void forEach(PairVisitor visitor) {
+		for(int n = 0; n < keys.length; ++n) {
+			final int left = (int) (keys[n] >>> BITS);
+			final int right = (int) (keys[n] & MASK);
+			visitor.visit(left, right, advances[n]);
+		}
+	}
+
+	/**
+	 * Visitor for the kerning pairs of this table.
+	 */
+	@FunctionalInterface
+	interface PairVisitor {
+		/**
+		 * Visits a kerning pair.
+		 * @param left			Left-hand character
+		 * @param right			Right-hand character
+		 * @param advance		Kerned advance
+		 */
+		void visit(int left, int right, float advance);
+	}
+
+	/**
+	 * Writes this table.
+	 * @param out Output
+	 * @throws IOException if the table cannot be written
+	 * @see #read(ByteBuffer)
+	 */
+	void write(DataOutput out) throws IOException {
+		out.writeInt(keys.length);
+		for(long key : keys) {
+			out.writeLong(key);
+		}
+		for(float advance : advances) {
+			out.writeFloat(advance);
+		}
+	}
+
+	/**
+	 * Reads a kerning table.
+	 * @param bb Buffer
+	 * @return Kerning table
+	 * @throws IllegalArgumentException if the table is corrupt
+	 * @see #write(DataOutput)
+	 */
+	static KerningTable read(ByteBuffer bb) {
+		// Load pairs
+		final int size = bb.getInt();
+		if((size < 0) || (size > bb.remaining() / (Long.BYTES + Float.BYTES))) throw new IllegalArgumentException("Invalid number of kerning pairs");
+		final long[] keys = new long[size];
+		final float[] advances = new float[size];
+		bb.asLongBuffer().get(keys);
+		bb.position(bb.position() + size * Long.BYTES);
+		bb.asFloatBuffer().get(advances);
+		bb.position(bb.position() + size * Float.BYTES);
+
+		// Validate keys
+		for(int n = 1; n < size; ++n) {
+			if(keys[n] <= keys[n - 1]) throw new IllegalArgumentException("Kerning pairs are not ordered");
+		}
+
+		return new KerningTable(keys, advances);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(keys);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return
+				(obj == this) ||
+				(obj instanceof KerningTable that) &&
+				Arrays.equals(this.keys, that.keys) &&
+				Arrays.equals(this.advances, that.advances);
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this)
+				.append("pairs", keys.length)
+				.build();
+	}
+
+	/**
+	 * Builder for a kerning table.
+	 */
+	public static class Builder {
+		private long[] keys = new long[16];
+		private float[] advances = new float[16];
+		private int size;
+
+		/**
+		 * Adds a kerning pair.
+		 * @param left			Left-hand character
+		 * @param right			Right-hand character
+		 * @param advance		Kerned advance of the left-hand character
+		 * @throws IllegalArgumentException if either character is not a valid code-point
+		 */
+		public Builder add(int left, int right, float advance) {
+			if(!Character.isValidCodePoint(left) || !Character.isValidCodePoint(right)) throw new IllegalArgumentException("Invalid kerning pair");
+			if(size == keys.length) {
+				keys = Arrays.copyOf(keys, size * 2);
+				advances = Arrays.copyOf(advances, size * 2);
+			}
+			keys[size] = key(left, right);
+			advances[size] = advance;
+			++size;
+			return this;
+		}
+
+		/**
+		 * Constructs this kerning table.
+		 * <p>
+		 * Pairs are sorted by key.  Each pair key is combined with its index into a single <code>long</code> so that the pairs can be sorted without boxing.
+		 * The sign bit is flipped such that the combined values are ordered as unsigned integers.
+		 * <p>
+		 * @return New kerning table
+		 * @throws IllegalArgumentException for a duplicate pair
+		 */
+		public KerningTable build() {
+			// Sort pairs by key
+			final int shift = 64 - 2 * BITS;
+			if(size > (1 << shift)) throw new IllegalArgumentException("Too many kerning pairs: " + size);
+			final long[] sorted = new long[size];
+			for(int n = 0; n < size; ++n) {
+				sorted[n] = ((keys[n] << shift) | n) ^ Long.MIN_VALUE;
+			}
+			Arrays.sort(sorted);
+
+			// Build table
+			final long[] k = new long[size];
+			final float[] v = new float[size];
+			final long mask = (1L << shift) - 1;
+			for(int n = 0; n < size; ++n) {
+				final int index = (int) (sorted[n] & mask);
+				k[n] = keys[index];
+				v[n] = advances[index];
+				if((n > 0) && (k[n] == k[n - 1])) throw new IllegalArgumentException("Duplicate kerning pair");
+			}
+
+			return new KerningTable(k, v);
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package org.sarge.jove.demo.text;
+
+import static org.sarge.lib.util.Check.*;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * The <i>layout cache</i> retains the vertex data of text that is laid out repeatedly, e.g. labels that are submitted every frame.
+ * <p>
+ * The cache is keyed by the text, font, scale and origin of the layout.
+ * On a cache hit the vertex data is copied directly to the destination buffer without any advance or kerning lookups.
+ * On a miss the text is laid out by the {@link GlyphWriter} and a copy of the resultant vertex data is retained.
+ * <p>
+ * The cache is bounded by the total size of the retained vertex data.
+ * When the capacity is exceeded the least-recently-used entries are evicted.
+ * Text whose vertex data is larger than the capacity of the cache is laid out but not retained.
+ * <p>
+ * Note that the cache must not be used with a {@link GlyphCache} since a cached layout would refer to the atlas slots of glyphs that may have been evicted.
+ * <p>
+ * Usage:
+ * <pre>
+ * LayoutCache cache = new LayoutCache(1 << 20);
+ * int count = cache.write(writer, "label", bb, 0);
+ * </pre>
+ * <p>
+ * @author Sarge
+ */
+public class LayoutCache {
+	/**
+	 * Cache key.
+	 */
+	private record Key(String text, GlyphSource glyphs, float scale, float x, float y) {
+	}
+
+	/**
+	 * Cached layout.
+	 */
+	private record Entry(byte[] data, int count) {
+	}
+
+	private final long capacity;
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+	private long size;
+	private long hits, misses;
+
+	/**
+	 * Constructor.
+	 * @param capacity Cache capacity (bytes)
+	 */
+	public LayoutCache(long capacity) {
+		this.capacity = oneOrMore(capacity);
+	}
+
+	/**
+	 * @return Total size of the cached vertex data (bytes)
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * @return Number of cached layouts
+	 */
+	public int count() {
+		return entries.size();
+	}
+
+	/**
+	 * @return Number of cache hits
+	 */
+	public long hits() {
+		return hits;
+	}
+
+	/**
+	 * @return Number of cache misses
+	 */
+	public long misses() {
+		return misses;
+	}
+
+	/**
+	 * Writes the vertices for the given text using the cached layout if present.
+	 * @param writer		Glyph writer
+	 * @param text			Text
+	 * @param bb			Buffer
+	 * @param offset		Buffer offset (bytes)
+	 * @return Number of vertices written
+	 * @throws IndexOutOfBoundsException if the buffer is too small
+	 * @see GlyphWriter#write(CharSequence, ByteBuffer, int)
+	 */
+	public int write(GlyphWriter writer, String text, ByteBuffer bb, int offset) {
+		// Copy cached layout
+		final Key key = new Key(text, writer.glyphs(), writer.scale(), writer.x(), writer.y());
+		final Entry entry = entries.get(key);
+		if(entry != null) {
+			++hits;
+			bb.put(offset, entry.data);
+			return entry.count;
+		}
+
+		// Otherwise layout text
+		++misses;
+		final int count = writer.write(text, bb, offset);
+
+		// Retain vertex data
+		final int len = count * GlyphWriter.STRIDE;
+		if(len <= capacity) {
+			final byte[] data = new byte[len];
+			bb.get(offset, data);
+			entries.put(key, new Entry(data, count));
+			size += len;
+			evict();
+		}
+
+		return count;
+	}
+
+	/**
+	 * Evicts least-recently-used layouts until the cache is within capacity.
+	 */
+	private void evict() {
+		final Iterator<Entry> itr = entries.values().iterator();
+		while(size > capacity) {
+			size -= itr.next().data.length;
+			itr.remove();
+		}
+	}
+
+	/**
+	 * Removes all cached layouts.
+	 */
+	public void clear() {
+		entries.clear();
+		size = 0;
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this)
+				.append("count", entries.size())
+				.append("size", size)
+				.append("hits", hits)
+				.append("misses", misses)
+				.build();
+	}
+}
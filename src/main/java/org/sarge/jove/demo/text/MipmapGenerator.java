@@ -0,0 +1,159 @@
+package org.sarge.jove.demo.text;
+
+import static org.sarge.lib.util.Check.*;
+
+import org.sarge.jove.common.Dimensions;
+import org.sarge.jove.platform.vulkan.*;
+import org.sarge.jove.platform.vulkan.core.*;
+import org.sarge.jove.platform.vulkan.image.*;
+import org.sarge.jove.platform.vulkan.pipeline.Barrier;
+
+/**
+ * The <i>mipmap generator</i> is a command that generates the mipmap chain of an image on the GPU.
+ * <p>
+ * Each level is generated by blitting the previous level at half the resolution.
+ * A barrier per level transitions the source level to a transfer source and then to a sampled image once it has been blitted.
+ * <p>
+ * It is assumed that all levels of the image are in the {@link VkImageLayout#TRANSFER_DST_OPTIMAL} layout and that level zero has been populated, i.e. the generator is recorded after the staging copy.
+ * On completion all levels are in the {@link VkImageLayout#SHADER_READ_ONLY_OPTIMAL} layout.
+ * Note that the image must be created with the {@link VkImageUsageFlag#TRANSFER_SRC} usage flag and its format must support linear filtering.
+ * <p>
+ * Usage:
+ * <pre>
+ * Image image = ...
+ * new MipmapGenerator(image).submit(pool);
+ * </pre>
+ * <p>
+ * @author Sarge
+ */
+class MipmapGenerator implements Command {
+	/**
+	 * Determines the number of mipmap levels for the given image dimensions.
+	 * @param size Image dimensions
+	 * @return Number of mipmap levels
+	 */
+	public static int levels(Dimensions size) {
+		final int max = Math.max(size.width(), size.height());
+		return 32 - Integer.numberOfLeadingZeros(max);
+	}
+
+	/**
+	 * Determines the number of mipmap levels for a texture atlas comprising a grid of tiles.
+	 * The mipmap chain stops at the level where a tile is a single texel, since smaller levels would blend neighbouring tiles.
+	 * @param size		Image dimensions
+	 * @param tile		Tile size
+	 * @return Number of mipmap levels
+	 */
+	public static int levels(Dimensions size, int tile) {
+		final int max = 32 - Integer.numberOfLeadingZeros(oneOrMore(tile));
+		return Math.min(levels(size), max);
+	}
+
+	private final Image image;
+	private final int levels;
+	private final VkFilter filter;
+
+	/**
+	 * Constructor.
+	 * @param image			Image
+	 * @param filter		Blit filter
+	 */
+	public MipmapGenerator(Image image, VkFilter filter) {
+		this.image = notNull(image);
+		this.levels = image.descriptor().levelCount();
+		this.filter = notNull(filter);
+	}
+
+	/**
+	 * Constructor using a linear filter.
+	 * @param image Image
+	 */
+	public MipmapGenerator(Image image) {
+		this(image, VkFilter.LINEAR);
+	}
+
+	@Override
+	public void record(VulkanLibrary lib, Command.Buffer buffer) {
+		final Image.Descriptor descriptor = image.descriptor();
+		int w = descriptor.extents().size().width();
+		int h = descriptor.extents().size().height();
+
+		for(int level = 1; level < levels; ++level) {
+			// Transition previous level to blit source
+			new Barrier.Builder()
+					.source(VkPipelineStage.TRANSFER)
+					.destination(VkPipelineStage.TRANSFER)
+					.image(image)
+						.subresource(subresource(level - 1))
+						.oldLayout(VkImageLayout.TRANSFER_DST_OPTIMAL)
+						.newLayout(VkImageLayout.TRANSFER_SRC_OPTIMAL)
+						.source(VkAccess.TRANSFER_WRITE)
+						.destination(VkAccess.TRANSFER_READ)
+						.build()
+					.build()
+					.record(lib, buffer);
+
+			// Blit to next level
+			final int nw = Math.max(1, w / 2);
+			final int nh = Math.max(1, h / 2);
+			final var region = new VkImageBlit();
+			region.srcSubresource = SubResource.toLayers(subresource(level - 1));
+			region.srcOffsets[1] = offset(w, h);
+			region.dstSubresource = SubResource.toLayers(subresource(level));
+			region.dstOffsets[1] = offset(nw, nh);
+			lib.vkCmdBlitImage(buffer, image, VkImageLayout.TRANSFER_SRC_OPTIMAL, image, VkImageLayout.TRANSFER_DST_OPTIMAL, 1, new VkImageBlit[]{region}, filter);
+
+			// Transition previous level to sampled image
+			new Barrier.Builder()
+					.source(VkPipelineStage.TRANSFER)
+					.destination(VkPipelineStage.FRAGMENT_SHADER)
+					.image(image)
+						.subresource(subresource(level - 1))
+						.oldLayout(VkImageLayout.TRANSFER_SRC_OPTIMAL)
+						.newLayout(VkImageLayout.SHADER_READ_ONLY_OPTIMAL)
+						.source(VkAccess.TRANSFER_READ)
+						.destination(VkAccess.SHADER_READ)
+						.build()
+					.build()
+					.record(lib, buffer);
+
+			w = nw;
+			h = nh;
+		}
+
+		// Transition last level to sampled image
+		new Barrier.Builder()
+				.source(VkPipelineStage.TRANSFER)
+				.destination(VkPipelineStage.FRAGMENT_SHADER)
+				.image(image)
+					.subresource(subresource(levels - 1))
+					.oldLayout(VkImageLayout.TRANSFER_DST_OPTIMAL)
+					.newLayout(VkImageLayout.SHADER_READ_ONLY_OPTIMAL)
+					.source(VkAccess.TRANSFER_WRITE)
+					.destination(VkAccess.SHADER_READ)
+					.build()
+				.build()
+				.record(lib, buffer);
+	}
+
+	/**
+	 * @return Sub-resource for the given mipmap level
+	 */
+	private SubResource subresource(int level) {
+		return new SubResource.Builder(image.descriptor())
+				.mipLevel(level)
+				.levelCount(1)
+				.build();
+	}
+
+	/**
+	 * @return Blit offset for the given level dimensions
+	 */
+	private static VkOffset3D offset(int w, int h) {
+		final var offset = new VkOffset3D();
+		offset.x = w;
+		offset.y = h;
+		offset.z = 1;
+		return offset;
+	}
+}
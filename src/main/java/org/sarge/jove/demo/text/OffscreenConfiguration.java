@@ -0,0 +1,130 @@
+package org.sarge.jove.demo.text;
+
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.sarge.jove.common.*;
+import org.sarge.jove.platform.vulkan.*;
+import org.sarge.jove.platform.vulkan.core.*;
+import org.sarge.jove.platform.vulkan.image.*;
+import org.sarge.jove.platform.vulkan.image.ClearValue.ColourClearValue;
+import org.sarge.jove.platform.vulkan.memory.*;
+import org.sarge.jove.platform.vulkan.render.*;
+import org.springframework.beans.factory.annotation.*;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.*;
+
+/**
+ * Headless configuration that renders to an offscreen colour image, e.g. for benchmarking or golden-image tests on a build agent without a display.
+ * <p>
+ * Enabled by the {@code offscreen} profile which replaces the desktop window and swapchain.
+ * The runner renders a number of frames, reports the throughput, writes the final frame to an image file and optionally compares it against a golden image.
+ * <p>
+ * @author Sarge
+ */
+@Configuration
+@Profile("offscreen")
+class OffscreenConfiguration {
+	private static final Dimensions SIZE = new Dimensions(512, 512);
+	private static final VkFormat FORMAT = VkFormat.R8G8B8A8_UNORM;
+
+	@Autowired private LogicalDevice dev;
+
+	@Bean
+	RenderPass pass() {
+		final Attachment attachment = new Attachment.Builder()
+				.format(FORMAT)
+				.load(VkAttachmentLoadOp.CLEAR)
+				.store(VkAttachmentStoreOp.STORE)
+				.finalLayout(VkImageLayout.TRANSFER_SRC_OPTIMAL)
+				.build();
+
+		return new Subpass().colour(attachment).create(dev);
+	}
+
+	@Bean
+	View colour(Allocator allocator) {
+		// Create colour image
+		final Image.Descriptor descriptor = new Image.Descriptor.Builder()
+				.type(VkImageType.TWO_D)
+				.aspect(VkImageAspect.COLOR)
+				.extents(SIZE)
+				.format(FORMAT)
+				.build();
+
+		final var props = new MemoryProperties.Builder<VkImageUsageFlag>()
+				.usage(VkImageUsageFlag.COLOR_ATTACHMENT)
+				.usage(VkImageUsageFlag.TRANSFER_SRC)
+				.required(VkMemoryProperty.DEVICE_LOCAL)
+				.build();
+
+		final Image image = new DefaultImage.Builder()
+				.descriptor(descriptor)
+				.properties(props)
+				.build(dev, allocator);
+
+		// Create view
+		final View view = new View.Builder(image).build(dev);
+		view.clear(new ColourClearValue(Colour.BLACK));
+		return view;
+	}
+
+	@Bean
+	FrameBuffer frame(RenderPass pass, View colour) {
+		return FrameBuffer.create(pass, SIZE, List.of(colour));
+	}
+
+	@Bean
+	VulkanBuffer readback(Allocator allocator) {
+		final var props = new MemoryProperties.Builder<VkBufferUsageFlag>()
+				.usage(VkBufferUsageFlag.TRANSFER_DST)
+				.required(VkMemoryProperty.HOST_VISIBLE)
+				.required(VkMemoryProperty.HOST_COHERENT)
+				.optimal(VkMemoryProperty.HOST_CACHED)
+				.build();
+
+		return VulkanBuffer.create(dev, allocator, SIZE.width() * SIZE.height() * 4L, props);
+	}
+
+	@Bean
+	OffscreenRenderer renderer(FrameBuffer frame, View colour, Command.Sequence sequence, VulkanBuffer readback, UploadBatch uploads) {
+		// Complete startup uploads before rendering
+		uploads.flush();
+
+		return new OffscreenRenderer(frame, colour.image(), sequence, readback);
+	}
+
+	@Bean
+	static CommandLineRunner runner(
+			OffscreenRenderer renderer,
+			@Qualifier("graphics") Command.Pool graphics,
+			@Value("${offscreen.frames:100}") int frames,
+			@Value("${offscreen.output:offscreen.png}") String output,
+			@Value("${offscreen.golden:}") String golden,
+			@Value("${offscreen.tolerance:2}") int tolerance
+	) {
+		return args -> {
+			// Render frames
+			final long start = System.nanoTime();
+			for(int n = 0; n < frames; ++n) {
+				renderer.submit(graphics);
+			}
+			final long elapsed = System.nanoTime() - start;
+			System.out.printf("Rendered %d frames in %d ms (%.1f fps)%n", frames, elapsed / 1_000_000, frames * 1e9 / elapsed);
+
+			// Write final frame
+			final BufferedImage image = renderer.image();
+			ImageIO.write(image, "png", new File(output));
+
+			// Compare against golden image
+			if(!golden.isEmpty()) {
+				final BufferedImage expected = ImageIO.read(new File(golden));
+				final int diff = OffscreenRenderer.compare(expected, image, tolerance);
+				if(diff > 0) throw new IllegalStateException(String.format("Frame differs from golden image: pixels=%d", diff));
+			}
+		};
+	}
+}
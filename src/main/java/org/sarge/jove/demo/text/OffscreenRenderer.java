@@ -0,0 +1,130 @@
+package org.sarge.jove.demo.text;
+
+import static org.sarge.lib.util.Check.*;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+
+import org.sarge.jove.common.Dimensions;
+import org.sarge.jove.platform.vulkan.*;
+import org.sarge.jove.platform.vulkan.core.*;
+import org.sarge.jove.platform.vulkan.image.*;
+import org.sarge.jove.platform.vulkan.pipeline.Barrier;
+import org.sarge.jove.platform.vulkan.render.FrameBuffer;
+
+/**
+ * The <i>offscreen renderer</i> renders a frame into a colour image rather than a swapchain and reads back the result, e.g. on a headless build agent.
+ * <p>
+ * The renderer is a command that renders the frame and then copies the colour image to a host-visible readback buffer.
+ * It is assumed that the render pass transitions the colour attachment to {@link VkImageLayout#TRANSFER_SRC_OPTIMAL}.
+ * The colour image is an 8-bit RGBA image.
+ * <p>
+ * Usage:
+ * <pre>
+ * OffscreenRenderer renderer = ...
+ * renderer.submit(pool);
+ * BufferedImage frame = renderer.image();
+ * </pre>
+ * <p>
+ * @author Sarge
+ */
+class OffscreenRenderer implements Command {
+	private final FrameBuffer frame;
+	private final Image image;
+	private final Command.Sequence sequence;
+	private final VulkanBuffer readback;
+
+	/**
+	 * Constructor.
+	 * @param frame			Frame buffer
+	 * @param image			Colour image
+	 * @param sequence		Rendering sequence
+	 * @param readback		Host-visible readback buffer
+	 * @throws IllegalArgumentException if the readback buffer is too small for the colour image
+	 */
+	public OffscreenRenderer(FrameBuffer frame, Image image, Command.Sequence sequence, VulkanBuffer readback) {
+		final Dimensions size = image.descriptor().extents().size();
+		if(readback.length() < size.width() * size.height() * 4L) throw new IllegalArgumentException("Readback buffer is too small");
+		this.frame = notNull(frame);
+		this.image = image;
+		this.sequence = notNull(sequence);
+		this.readback = readback;
+	}
+
+	@Override
+	public void record(VulkanLibrary lib, Command.Buffer buffer) {
+		// Render frame
+		frame.begin(VkSubpassContents.SECONDARY_COMMAND_BUFFERS).record(lib, buffer);
+		sequence.record(buffer);
+		FrameBuffer.END.record(lib, buffer);
+
+		// Wait for rendering before the copy
+		new Barrier.Builder()
+				.source(VkPipelineStage.COLOR_ATTACHMENT_OUTPUT)
+				.destination(VkPipelineStage.TRANSFER)
+				.image(image)
+					.oldLayout(VkImageLayout.TRANSFER_SRC_OPTIMAL)
+					.newLayout(VkImageLayout.TRANSFER_SRC_OPTIMAL)
+					.source(VkAccess.COLOR_ATTACHMENT_WRITE)
+					.destination(VkAccess.TRANSFER_READ)
+					.build()
+				.build()
+				.record(lib, buffer);
+
+		// Copy colour image to readback buffer
+		final Dimensions size = image.descriptor().extents().size();
+		final var region = new VkBufferImageCopy();
+		region.imageSubresource = SubResource.toLayers(image.descriptor());
+		region.imageOffset = new VkOffset3D();
+		region.imageExtent = new VkExtent3D();
+		region.imageExtent.width = size.width();
+		region.imageExtent.height = size.height();
+		region.imageExtent.depth = 1;
+		lib.vkCmdCopyImageToBuffer(buffer, image, VkImageLayout.TRANSFER_SRC_OPTIMAL, readback, 1, new VkBufferImageCopy[]{region});
+	}
+
+	/**
+	 * Reads back the most recently rendered frame.
+	 * Note that the rendering command must have completed.
+	 * @return Frame image
+	 */
+	public BufferedImage image() {
+		final Dimensions size = image.descriptor().extents().size();
+		final int w = size.width();
+		final int h = size.height();
+		final byte[] pixels = new byte[w * h * 4];
+		final ByteBuffer bb = readback.buffer();
+		bb.get(0, pixels);
+		final var result = new BufferedImage(w, h, BufferedImage.TYPE_4BYTE_ABGR);
+		result.getRaster().setDataElements(0, 0, w, h, pixels);
+		return result;
+	}
+
+	/**
+	 * Compares two frame images.
+	 * @param expected		Expected image
+	 * @param actual		Actual image
+	 * @param tolerance		Maximum difference of a colour component
+	 * @return Number of pixels that differ by more than the tolerance
+	 * @throws IllegalArgumentException if the images have different dimensions
+	 */
+	public static int compare(BufferedImage expected, BufferedImage actual, int tolerance) {
+		final int w = expected.getWidth();
+		final int h = expected.getHeight();
+		if((actual.getWidth() != w) || (actual.getHeight() != h)) throw new IllegalArgumentException("Mismatched image dimensions");
+		int count = 0;
+		for(int y = 0; y < h; ++y) {
+			for(int x = 0; x < w; ++x) {
+				final int a = expected.getRGB(x, y);
+				final int b = actual.getRGB(x, y);
+				for(int shift = 0; shift < 32; shift += 8) {
+					if(Math.abs(((a >>> shift) & 0xFF) - ((b >>> shift) & 0xFF)) > tolerance) {
+						++count;
+						break;
+					}
+				}
+			}
+		}
+		return count;
+	}
+}
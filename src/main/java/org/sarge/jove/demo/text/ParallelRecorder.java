@@ -0,0 +1,142 @@
+package org.sarge.jove.demo.text;
+
+import static org.sarge.lib.util.Check.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.sarge.jove.common.NativeObject;
+import org.sarge.jove.platform.vulkan.core.*;
+import org.sarge.jove.platform.vulkan.core.Command.SecondaryBuffer;
+import org.sarge.jove.platform.vulkan.render.RenderPass;
+
+/**
+ * The <i>parallel recorder</i> records batches of rendering commands into secondary command buffers across a number of worker threads.
+ * <p>
+ * The batches are divided into contiguous slices of roughly equal size, one per worker.
+ * Each worker records its slice into a secondary buffer allocated from its own command pool, since a command pool cannot be used concurrently.
+ * The resultant secondary buffers are executed in order by a single command, i.e. the rendering order of the batches is preserved.
+ * <p>
+ * Note that a secondary buffer does not inherit any state from the primary buffer or from other secondary buffers.
+ * Each batch must therefore be self-contained, i.e. must start with the pipeline, descriptor set and vertex buffer bindings for its draw commands.
+ * <p>
+ * Usage:
+ * <pre>
+ * ParallelRecorder recorder = new ParallelRecorder(dev, queue, 4);
+ * List&lt;List&lt;Command&gt;&gt; batches = List.of(
+ *     List.of(pipeline.bind(), set.bind(layout), vbo.bind(0), draw),
+ *     ...
+ * );
+ * List&lt;SecondaryBuffer&gt; buffers = recorder.record(pass, batches);
+ * Command execute = ParallelRecorder.execute(buffers);
+ * </pre>
+ * <p>
+ * @author Sarge
+ */
+public class ParallelRecorder {
+	private final List<Command.Pool> pools;
+	private final ExecutorService executor;
+
+	/**
+	 * Constructor.
+	 * @param dev			Logical device
+	 * @param queue			Work queue
+	 * @param threads		Number of worker threads
+	 */
+	public ParallelRecorder(LogicalDevice dev, WorkQueue queue, int threads) {
+		oneOrMore(threads);
+		this.pools = new ArrayList<>(threads);
+		for(int n = 0; n < threads; ++n) {
+			pools.add(Command.Pool.create(dev, queue));
+		}
+		this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+			final Thread thread = new Thread(runnable, "recorder");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * @return Number of worker threads
+	 */
+	public int threads() {
+		return pools.size();
+	}
+
+	/**
+	 * Records the given batches of commands.
+	 * @param pass			Render pass
+	 * @param batches		Command batches
+	 * @return Secondary command buffers in rendering order
+	 * @throws IllegalArgumentException if there are no batches
+	 * @throws RuntimeException if recording fails
+	 */
+	public List<SecondaryBuffer> record(RenderPass pass, List<List<Command>> batches) {
+		// Executing zero secondary buffers is invalid
+		final int total = batches.size();
+		if(total == 0) throw new IllegalArgumentException("No batches to record");
+
+		// Divide batches into contiguous non-empty slices
+		final int workers = Math.min(pools.size(), total);
+		final List<Future<SecondaryBuffer>> futures = new ArrayList<>(workers);
+		for(int n = 0; n < workers; ++n) {
+			final Command.Pool pool = pools.get(n);
+			final List<List<Command>> slice = batches.subList(n * total / workers, (n + 1) * total / workers);
+			futures.add(executor.submit(() -> record(pool, pass, slice)));
+		}
+
+		// Wait for workers
+		final List<SecondaryBuffer> buffers = new ArrayList<>(workers);
+		try {
+			for(Future<SecondaryBuffer> future : futures) {
+				buffers.add(future.get());
+			}
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted recording command buffers", e);
+		}
+		catch(ExecutionException e) {
+			throw new RuntimeException("Error recording command buffers", e.getCause());
+		}
+
+		return buffers;
+	}
+
+	/**
+	 * Records a slice of batches to a secondary buffer.
+	 */
+	private static SecondaryBuffer record(Command.Pool pool, RenderPass pass, List<List<Command>> slice) {
+		final SecondaryBuffer buffer = pool.secondary();
+		buffer.begin(pass.handle());
+		for(List<Command> batch : slice) {
+			for(Command cmd : batch) {
+				buffer.add(cmd);
+			}
+		}
+		buffer.end();
+		return buffer;
+	}
+
+	/**
+	 * Creates a command that executes the given secondary buffers.
+	 * @param buffers Secondary buffers
+	 * @return Execute command
+	 * @throws IllegalArgumentException if there are no buffers
+	 */
+	public static Command execute(List<SecondaryBuffer> buffers) {
+		if(buffers.isEmpty()) throw new IllegalArgumentException("No secondary buffers to execute");
+		final NativeObject[] handles = NativeObject.array(buffers);
+		return (lib, buffer) -> lib.vkCmdExecuteCommands(buffer, handles.length, handles);
+	}
+
+	/**
+	 * Releases the worker threads and command pools.
+	 */
+	public void destroy() {
+		executor.shutdown();
+		for(Command.Pool pool : pools) {
+			pool.destroy();
+		}
+	}
+}
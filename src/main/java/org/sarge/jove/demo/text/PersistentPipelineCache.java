@@ -0,0 +1,265 @@
+package org.sarge.jove.demo.text;
+
+import static org.sarge.lib.util.Check.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import org.sarge.jove.platform.vulkan.VkPhysicalDeviceProperties;
+import org.sarge.jove.platform.vulkan.core.*;
+import org.sarge.jove.platform.vulkan.pipeline.PipelineCache;
+
+/**
+ * A <i>persistent pipeline cache</i> loads a pipeline cache from a file on startup and writes it back on shutdown.
+ * <p>
+ * The cache file is keyed by the pipeline cache UUID and driver version of the physical device, i.e. a new cache is generated after a driver update.
+ * The file is validated before use and is rejected (starting with an empty cache) if it is corrupt or does not match the device.
+ * Since the pipeline cache is initialised from the existing data, the data written on shutdown contains both the previous and the new pipelines.
+ * <p>
+ * The file format is as follows (big-endian):
+ * <pre>
+ * int		magic number
+ * short	version
+ * int		vendor ID
+ * int		device ID
+ * int		driver version
+ * byte[16]	pipeline cache UUID
+ * int		data length
+ * long		CRC32 of the data
+ * byte[]	cache data
+ * </pre>
+ * <p>
+ * @author Sarge
+ */
+public class PersistentPipelineCache {
+	private static final Logger LOG = Logger.getLogger(PersistentPipelineCache.class.getName());
+
+	/**
+	 * Magic number, i.e. <code>PCCH</code>.
+	 */
+	public static final int MAGIC = 0x50434348;
+
+	/**
+	 * Current version of the file format.
+	 */
+	public static final short VERSION = 1;
+
+	private static final int UUID_SIZE = 16;
+	private static final int HEADER_VERSION_ONE = 1;
+	private static final int VULKAN_HEADER = 16 + UUID_SIZE;
+
+	/**
+	 * Device identity.
+	 * @param vendor		Vendor ID
+	 * @param device		Device ID
+	 * @param driver		Driver version
+	 * @param uuid			Pipeline cache UUID
+	 */
+	public record Identity(int vendor, int device, int driver, byte[] uuid) {
+		/**
+		 * Constructor.
+		 */
+		public Identity {
+			if(uuid.length != UUID_SIZE) throw new IllegalArgumentException("Invalid pipeline cache UUID");
+			uuid = uuid.clone();
+		}
+
+		/**
+		 * Creates the identity of the physical device of the given logical device.
+		 * @param dev Logical device
+		 * @return Device identity
+		 */
+		public static Identity of(LogicalDevice dev) {
+			final var props = new VkPhysicalDeviceProperties();
+			dev.library().vkGetPhysicalDeviceProperties(dev.parent(), props);
+			return new Identity(props.vendorID, props.deviceID, props.driverVersion, props.pipelineCacheUUID);
+		}
+
+		/**
+		 * @return Cache file name for this device
+		 */
+		String filename() {
+			return String.format("pipeline-%s-%08x.cache", HexFormat.of().formatHex(uuid), driver);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return
+					(obj == this) ||
+					(obj instanceof Identity that) &&
+					(this.vendor == that.vendor) &&
+					(this.device == that.device) &&
+					(this.driver == that.driver) &&
+					Arrays.equals(this.uuid, that.uuid);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(vendor, device, driver, Arrays.hashCode(uuid));
+		}
+	}
+
+	private final Path file;
+	private final Identity id;
+	private final PipelineCache cache;
+
+	/**
+	 * Constructor.
+	 * @param dev			Logical device
+	 * @param dir			Cache directory
+	 * @param id			Device identity
+	 */
+	public PersistentPipelineCache(LogicalDevice dev, Path dir, Identity id) {
+		this.file = dir.resolve(id.filename());
+		this.id = notNull(id);
+		this.cache = PipelineCache.create(dev, load());
+	}
+
+	/**
+	 * @return Pipeline cache
+	 */
+	public PipelineCache cache() {
+		return cache;
+	}
+
+	/**
+	 * Loads and validates the cache data.
+	 * @return Cache data or an empty array if the file does not exist or is invalid
+	 */
+	private byte[] load() {
+		if(!Files.exists(file)) {
+			return new byte[0];
+		}
+
+		try {
+			return read(ByteBuffer.wrap(Files.readAllBytes(file)), id);
+		}
+		catch(IOException e) {
+			LOG.warning("Rejected pipeline cache " + file + ": " + e.getMessage());
+			return new byte[0];
+		}
+	}
+
+	/**
+	 * Reads and validates cache data.
+	 * @param bb		Buffer
+	 * @param id		Expected device identity
+	 * @return Cache data
+	 * @throws IOException if the data is corrupt or does not match the given device
+	 */
+	static byte[] read(ByteBuffer bb, Identity id) throws IOException {
+		try {
+			// Validate header
+			bb.order(ByteOrder.BIG_ENDIAN);
+			if(bb.getInt() != MAGIC) throw new IOException("Not a pipeline cache file");
+			if(bb.getShort() != VERSION) throw new IOException("Unsupported pipeline cache version");
+
+			// Validate device
+			final byte[] uuid = new byte[UUID_SIZE];
+			final int vendor = bb.getInt();
+			final int device = bb.getInt();
+			final int driver = bb.getInt();
+			bb.get(uuid);
+			if(!id.equals(new Identity(vendor, device, driver, uuid))) throw new IOException("Pipeline cache does not match the device");
+
+			// Load data
+			final int len = bb.getInt();
+			final long crc = bb.getLong();
+			if((len < 0) || (len != bb.remaining())) throw new IOException("Invalid pipeline cache length");
+			final byte[] data = new byte[len];
+			bb.get(data);
+
+			// Validate data
+			if(checksum(data) != crc) throw new IOException("Pipeline cache checksum mismatch");
+			validate(data, id);
+
+			return data;
+		}
+		catch(BufferUnderflowException e) {
+			throw new IOException("Truncated pipeline cache", e);
+		}
+	}
+
+	/**
+	 * Validates the Vulkan header of the given cache data.
+	 */
+	private static void validate(byte[] data, Identity id) throws IOException {
+		// Ignore empty cache
+		if(data.length == 0) {
+			return;
+		}
+
+		// Validate header (note Vulkan cache data is in host byte order)
+		final ByteBuffer bb = ByteBuffer.wrap(data).order(ByteOrder.nativeOrder());
+		if(data.length < VULKAN_HEADER) throw new IOException("Truncated Vulkan pipeline cache header");
+		final int len = bb.getInt();
+		final int version = bb.getInt();
+		if((len < VULKAN_HEADER) || (len > data.length) || (version != HEADER_VERSION_ONE)) throw new IOException("Invalid Vulkan pipeline cache header");
+
+		// Validate device
+		final byte[] uuid = new byte[UUID_SIZE];
+		final int vendor = bb.getInt();
+		final int device = bb.getInt();
+		bb.get(uuid);
+		if((vendor != id.vendor) || (device != id.device) || !Arrays.equals(uuid, id.uuid)) throw new IOException("Vulkan pipeline cache does not match the device");
+	}
+
+	/**
+	 * @return CRC32 of the given data
+	 */
+	private static long checksum(byte[] data) {
+		final CRC32 crc = new CRC32();
+		crc.update(data);
+		return crc.getValue();
+	}
+
+	/**
+	 * Writes cache data.
+	 * @param data		Cache data
+	 * @param id		Device identity
+	 * @param out		Output stream
+	 * @throws IOException if the data cannot be written
+	 */
+	static void write(byte[] data, Identity id, OutputStream out) throws IOException {
+		final var dos = new DataOutputStream(new BufferedOutputStream(out));
+		dos.writeInt(MAGIC);
+		dos.writeShort(VERSION);
+		dos.writeInt(id.vendor);
+		dos.writeInt(id.device);
+		dos.writeInt(id.driver);
+		dos.write(id.uuid);
+		dos.writeInt(data.length);
+		dos.writeLong(checksum(data));
+		dos.write(data);
+		dos.flush();
+	}
+
+	/**
+	 * Writes the cache to the file and releases the pipeline cache.
+	 * The file is replaced atomically such that an interrupted write cannot corrupt an existing cache.
+	 * @throws IOException if the cache cannot be written
+	 */
+	public void destroy() throws IOException {
+		try {
+			// Retrieve cache data
+			final ByteBuffer bb = cache.data();
+			final byte[] data = new byte[bb.remaining()];
+			bb.get(data);
+
+			// Write to temporary file and replace
+			Files.createDirectories(file.toAbsolutePath().getParent());
+			final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+			try(final OutputStream out = Files.newOutputStream(tmp)) {
+				write(data, id, out);
+			}
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally {
+			cache.destroy();
+		}
+	}
+}
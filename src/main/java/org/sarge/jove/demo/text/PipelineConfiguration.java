@@ -1,14 +1,19 @@
 package org.sarge.jove.demo.text;
 
 import java.io.*;
+import java.nio.file.Paths;
+import java.util.*;
 
 import org.sarge.jove.common.*;
+import org.sarge.jove.demo.text.GlyphInstanceBuilder.Instances;
 import org.sarge.jove.io.*;
-import org.sarge.jove.model.Mesh;
-import org.sarge.jove.platform.vulkan.VkShaderStage;
+import org.sarge.jove.model.*;
+import org.sarge.jove.platform.vulkan.*;
 import org.sarge.jove.platform.vulkan.core.LogicalDevice;
 import org.sarge.jove.platform.vulkan.pipeline.*;
 import org.sarge.jove.platform.vulkan.render.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.*;
 
 @Configuration
@@ -22,13 +27,20 @@ class PipelineConfiguration {
 	}
 
 	@Bean
-	Shader vertex() throws IOException {
-		return loader.load("text.vert.spiv");
+	Shader vertex(Optional<Instances> instances, Optional<TextBatch> batch) throws IOException {
+		final boolean instanced = instances.isPresent() || batch.isPresent();
+		return loader.load(instanced ? "text.instance.vert.spiv" : "text.vert.spiv");
 	}
 
 	@Bean
-	Shader fragment() throws IOException {
-		return loader.load("text.frag.spiv");
+	Shader fragment(@Value("${text.sdf:false}") boolean sdf) throws IOException {
+		return loader.load(sdf ? "text.sdf.frag.spiv" : "text.frag.spiv");
+	}
+
+	@Bean(destroyMethod = "destroy")
+	PersistentPipelineCache cache(@Value("${pipeline.cache:cache}") String dir) {
+		final var id = PersistentPipelineCache.Identity.of(dev);
+		return new PersistentPipelineCache(dev, Paths.get(dir), id);
 	}
 
 	@Bean
@@ -39,7 +51,36 @@ class PipelineConfiguration {
 	}
 
 	@Bean
-	public Pipeline pipeline(RenderPass pass, Shader vertex, Shader fragment, PipelineLayout layout, Mesh mesh) {
+	@Primary
+	public Pipeline pipeline(RenderPass pass, Shader vertex, Shader fragment, PipelineLayout layout, Mesh mesh, Optional<Instances> instances, Optional<TextBatch> batch, GlyphMetrics metrics, PersistentPipelineCache cache) {
+		// Delegate to instanced glyphs
+		if(instances.isPresent() || batch.isPresent()) {
+			return instanced(pass, vertex, fragment, layout, metrics, cache);
+		}
+
+		return mesh(pass, vertex, fragment, layout, mesh, cache);
+	}
+
+	/**
+	 * Creates the pipeline for dynamic text.
+	 * Dynamic text has the same vertex layout as the mesh regardless of whether the scene is instanced.
+	 */
+	@Bean("hud")
+	@ConditionalOnProperty("text.dynamic")
+	public Pipeline hud(RenderPass pass, Shader fragment, PipelineLayout layout, Mesh mesh, PersistentPipelineCache cache) throws IOException {
+		final Shader vertex = loader.load("text.vert.spiv");
+		try {
+			return mesh(pass, vertex, fragment, layout, mesh, cache);
+		}
+		finally {
+			vertex.destroy();
+		}
+	}
+
+	/**
+	 * Creates the pipeline for glyph mesh vertices.
+	 */
+	private Pipeline mesh(RenderPass pass, Shader vertex, Shader fragment, PipelineLayout layout, Mesh mesh, PersistentPipelineCache cache) {
 		return new GraphicsPipelineBuilder(pass)
 				.viewport(new Rectangle(new Dimensions(512, 512)))
 				.shader(new ProgrammableShaderStage(VkShaderStage.VERTEX, vertex))
@@ -54,6 +95,43 @@ class PipelineConfiguration {
 					.attachment()
 						.build()
 					.build()
-				.build(dev, layout);
+				.build(dev, layout, cache.cache());
+	}
+
+	/**
+	 * Creates the pipeline for instanced glyphs.
+	 * The vertex shader generates a unit quad per glyph instance and is specialised by the number of tiles in the font.
+	 */
+	private Pipeline instanced(RenderPass pass, Shader vertex, Shader fragment, PipelineLayout layout, GlyphMetrics metrics, PersistentPipelineCache cache) {
+		final var constants = Map.of(0, metrics.tiles());
+		return new GraphicsPipelineBuilder(pass)
+				.viewport(new Rectangle(new Dimensions(512, 512)))
+				.shader(new ProgrammableShaderStage(VkShaderStage.VERTEX, vertex).constants(constants))
+				.shader(new ProgrammableShaderStage(VkShaderStage.FRAGMENT, fragment))
+				.input()
+					.binding()
+						.index(0)
+						.stride(GlyphInstanceBuilder.STRIDE)
+						.rate(VkVertexInputRate.INSTANCE)
+						.attribute()
+							.location(0)
+							.format(VkFormat.R32G32B32_SFLOAT)
+							.offset(0)
+							.build()
+						.attribute()
+							.location(1)
+							.format(VkFormat.R32_UINT)
+							.offset(3 * Float.BYTES)
+							.build()
+						.build()
+					.build()
+				.assembly()
+					.topology(Primitive.TRIANGLE_STRIP)
+					.build()
+				.blend()
+					.attachment()
+						.build()
+					.build()
+				.build(dev, layout, cache.cache());
 	}
 }
@@ -1,18 +1,35 @@
 package org.sarge.jove.demo.text;
 
+import java.io.*;
+import java.nio.file.*;
 import java.util.*;
+import java.util.logging.Logger;
 
 import org.sarge.jove.common.*;
 import org.sarge.jove.control.Frame;
-import org.sarge.jove.platform.vulkan.VkImageUsageFlag;
+import org.sarge.jove.demo.text.FrameProfiler.*;
+import org.sarge.jove.platform.vulkan.*;
 import org.sarge.jove.platform.vulkan.core.*;
 import org.sarge.jove.platform.vulkan.render.*;
 import org.sarge.jove.scene.core.RenderLoop;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.*;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.*;
 
 @Configuration
+@Profile("!offscreen")
 class PresentationConfiguration {
+	private static final Logger LOG = Logger.getLogger(PresentationConfiguration.class.getName());
+
+	/**
+	 * Default number of in-flight frames.
+	 */
+	static final int FRAMES = 2;
+
+	@Value("${swapchain.images:2}") private int images;
+	@Value("${swapchain.mode:FIFO_KHR}") private List<VkPresentModeKHR> modes;
+	@Value("${render.frames:" + FRAMES + "}") private int frames;
+
 	@Bean
 	public static Surface surface(Handle surface, PhysicalDevice dev) {
 		return new Surface(surface, dev);
@@ -20,8 +37,15 @@ class PresentationConfiguration {
 
 	@Bean
 	SwapchainAdapter adapter(Surface surface, RenderPass pass) {
+		// Select swapchain configuration supported by the surface
+		final VkPresentModeKHR mode = mode(surface.modes(), modes);
+		final int count = count(surface.capabilities(), images);
+		LOG.info(String.format("Presentation: mode=%s images=%d frames=%d", mode, count, frames));
+
+		// Create swapchain
 		final var swapchain = new Swapchain.Builder(surface)
-				.count(2)
+				.count(count)
+				.presentation(mode)
 				.clear(Colour.BLACK)
 				//.clear(new Colour(0.3f, 0.3f, 0.3f, 1))
 				.usage(VkImageUsageFlag.TRANSFER_SRC);
@@ -29,6 +53,32 @@ class PresentationConfiguration {
 		return new SwapchainAdapter(swapchain, pass, List.of());
 	}
 
+	/**
+	 * Selects the first preferred present mode that is supported by the surface.
+	 * Falls back to {@link VkPresentModeKHR#FIFO_KHR} which is always supported.
+	 * @param available		Supported present modes
+	 * @param preferred		Preferred present modes in order
+	 * @return Present mode
+	 */
+	static VkPresentModeKHR mode(Set<VkPresentModeKHR> available, List<VkPresentModeKHR> preferred) {
+		return preferred
+				.stream()
+				.filter(available::contains)
+				.findFirst()
+				.orElse(VkPresentModeKHR.FIFO_KHR);
+	}
+
+	/**
+	 * Clamps the requested number of swapchain images to the range supported by the surface.
+	 * @param caps			Surface capabilities
+	 * @param count			Requested number of images
+	 * @return Number of images
+	 */
+	static int count(VkSurfaceCapabilitiesKHR caps, int count) {
+		final int min = Math.max(count, caps.minImageCount);
+		return caps.maxImageCount == 0 ? min : Math.min(min, caps.maxImageCount);
+	}
+
 	@Bean
 	public static RenderPass pass(LogicalDevice dev) {
 		final var surfaceFormat = Surface.defaultSurfaceFormat();
@@ -37,20 +87,54 @@ class PresentationConfiguration {
 	}
 
 	@Bean
-	static FrameComposer composer(@Qualifier("graphics") Command.Pool pool, Command.Sequence sequence) {
-		return new FrameComposer(pool, sequence);
+	static FrameComposer composer(@Qualifier("graphics") Command.Pool pool, Command.Sequence sequence, Optional<FrameProfiler> profiler) {
+		// Time recording if profiling
+		final Command.Sequence record = profiler
+				.<Command.Sequence>map(p -> buffer -> p.time(Phase.RECORD, () -> sequence.record(buffer)))
+				.orElse(sequence);
+
+		return new FrameComposer(pool, record);
 	}
 
 	@Bean
 	VulkanRenderTask render(FrameComposer composer, SwapchainAdapter swapchain, LogicalDevice dev) {
-		final VulkanFrame[] frames = VulkanFrame.array(2, () -> DefaultVulkanFrame.create(dev));
-		return new VulkanRenderTask(composer, swapchain, frames);
+		final VulkanFrame[] array = VulkanFrame.array(frames, () -> DefaultVulkanFrame.create(dev));
+		return new VulkanRenderTask(composer, swapchain, array);
+	}
+
+	@Bean(destroyMethod = "destroy")
+	@ConditionalOnProperty("profile.gpu")
+	static Timestamps timestamps(LogicalDevice dev, UploadBatch uploads, @Value("${render.frames:" + FRAMES + "}") int frames) {
+		return new Timestamps(dev, frames, uploads);
+	}
+
+	@Bean(destroyMethod = "destroy")
+	@ConditionalOnProperty("profile")
+	static FrameProfiler profiler(Optional<Timestamps> timestamps, @Value("${profile.report:300}") int report, @Value("${profile.csv:}") String csv) throws IOException {
+		final var profiler = new FrameProfiler(1000, report);
+		timestamps.ifPresent(profiler::gpu);
+		if(!csv.isEmpty()) {
+			profiler.csv(Files.newBufferedWriter(Paths.get(csv)));
+		}
+		return profiler;
 	}
 
 	@Bean
-	public RenderLoop loop(VulkanRenderTask task, Collection<Frame.Listener> listeners) {
+	public RenderLoop loop(VulkanRenderTask task, Collection<Frame.Listener> listeners, Optional<FrameProfiler> profiler, UploadBatch uploads, @Value("${render.fps:0}") int fps) {
+		// Complete startup uploads before rendering
+		uploads.flush();
+
+		// Time rendering if profiling
+		final Runnable render = profiler
+				.<Runnable>map(p -> () -> p.time(Phase.RENDER, task::render))
+				.orElse(task::render);
+
+		// Create render loop
 		final var loop = new RenderLoop();
-		loop.start(task::render);
+		if(fps > 0) {
+			loop.rate(fps);
+		}
+		loop.start(render);
 		for(var listener : listeners) {
 			loop.add(listener);
 		}
@@ -1,13 +1,16 @@
 package org.sarge.jove.demo.text;
 
-import java.util.List;
+import java.util.*;
 
+import org.sarge.jove.demo.text.FrameProfiler.Phase;
+import org.sarge.jove.demo.text.GlyphInstanceBuilder.Instances;
 import org.sarge.jove.model.Mesh;
 import org.sarge.jove.platform.vulkan.core.*;
 import org.sarge.jove.platform.vulkan.core.Command.SecondaryBuffer;
 import org.sarge.jove.platform.vulkan.pipeline.*;
 import org.sarge.jove.platform.vulkan.render.*;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.*;
 import org.springframework.context.annotation.*;
 
 @Configuration
@@ -23,31 +26,74 @@ public class RenderConfiguration {
 	}
 
 	@Bean("vbo.bind")
-	static Command vbo(VertexBuffer vbo) {
-		return vbo.bind(0);
+	static Command vbo(VertexBuffer vbo, Optional<TextBatch> batch) {
+		return batch.map(TextBatch::bind).orElseGet(() -> vbo.bind(0));
 	}
 
 	@Bean
-	static DrawCommand draw(Mesh mesh) {
+	static Command draw(Mesh mesh, Optional<Instances> instances, Optional<TextBatch> batch) {
+		// Draw all labels with a single indirect draw
+		if(batch.isPresent()) {
+			return batch.get().draw();
+		}
+
+		// Draw unit quad per glyph instance
+		if(instances.isPresent()) {
+			return new DrawCommand.Builder()
+					.count(GlyphInstanceBuilder.QUAD)
+					.instances(instances.get().count())
+					.build();
+		}
+
 		return new DrawCommand.Builder()
 				.count(mesh.count())
 				.build();
 	}
 
+	@Bean(destroyMethod = "destroy")
+	static ParallelRecorder recorder(LogicalDevice dev, @Qualifier("graphics") Command.Pool pool, @Value("${render.threads:1}") int threads) {
+		return new ParallelRecorder(dev, pool.queue(), threads);
+	}
+
 	@Bean
-	static Command.Sequence sequence(@Qualifier("graphics") Command.Pool pool, List<Command> commands, RenderPass pass) {
-		// TODO - this is still all very messy
+	static FrameSequence sequence(ParallelRecorder recorder, List<Command> commands, RenderPass pass, Optional<FrameProfiler.Timestamps> timestamps, Optional<DynamicText> text, @Qualifier("hud") Optional<Pipeline> hud, DescriptorSet set, @Qualifier("atlas.descriptor") Optional<DescriptorSet> atlas, PipelineLayout layout, ObjectProvider<FrameSequence.Task> tasks, UploadBatch uploads, Optional<FrameProfiler> profiler, @Value("${render.frames:" + PresentationConfiguration.FRAMES + "}") int frames) {
+		// Record text batches to secondary buffers for each frame
+		final List<Command> execute = new ArrayList<>(frames);
+		for(int n = 0; n < frames; ++n) {
+			final int index = n;
+
+			// Note that batches can be recorded to separate secondary buffers and must therefore bind their own pipeline and descriptor set
+			final List<List<Command>> batches = new ArrayList<>();
+			batches.add(new ArrayList<>(commands));
 
-		final SecondaryBuffer buffer = pool.secondary();
+			// Add dynamic text for this frame
+			if(text.isPresent()) {
+				final DynamicTextBuffer buffer = text.get().buffer();
+				batches.add(new ArrayList<>(List.of(
+						hud.orElseThrow().bind(),
+						atlas.orElse(set).bind(layout),
+						buffer.bind(n),
+						buffer.draw(n)
+				)));
+			}
 
-		buffer.begin(pass.handle());
+			// Write GPU timestamps around the rendering commands if profiling
+			timestamps.ifPresent(gpu -> {
+				batches.get(0).add(0, gpu.begin(index));
+				batches.get(batches.size() - 1).add(gpu.end(index));
+			});
 
-		for(Command cmd : commands) {
-			buffer.add(cmd);
+			// Execute secondary buffers in the frame
+			final List<SecondaryBuffer> buffers = recorder.record(pass, batches);
+			execute.add(ParallelRecorder.execute(buffers));
 		}
 
-		buffer.end();
+		// Update per-frame resources and submit any resultant uploads before each frame is rendered
+		final List<FrameSequence.Task> list = new ArrayList<>(tasks.orderedStream().toList());
+		list.add(profiler
+				.<FrameSequence.Task>map(p -> index -> p.time(Phase.UPLOAD, uploads::submit))
+				.orElse(index -> uploads.submit()));
 
-		return buffer.sequence();
+		return new FrameSequence(execute, list);
 	}
 }
@@ -0,0 +1,187 @@
+package org.sarge.jove.demo.text;
+
+import static org.sarge.lib.util.Check.*;
+
+import java.awt.*;
+import java.util.*;
+import java.util.List;
+
+/**
+ * A <i>skyline packer</i> allocates rectangles within a fixed-size area using the skyline bottom-left heuristic.
+ * <p>
+ * The packer maintains the <i>skyline</i> of the allocated area as a list of horizontal segments.
+ * Each rectangle is placed at the position that results in the lowest top edge, with ties broken by the leftmost position.
+ * <p>
+ * Usage:
+ * <pre>
+ * SkylinePacker packer = new SkylinePacker(256, 256);
+ * Point pos = packer.add(12, 20);
+ * </pre>
+ * <p>
+ * @author Sarge
+ */
+class SkylinePacker {
+	/**
+	 * Skyline segment.
+	 */
+	private static class Segment {
+		private int x, y, width;
+
+		private Segment(int x, int y, int width) {
+			this.x = x;
+			this.y = y;
+			this.width = width;
+		}
+	}
+
+	private final int width, height;
+	private final List<Segment> skyline = new ArrayList<>();
+
+	/**
+	 * Constructor.
+	 * @param width			Width of the packed area
+	 * @param height		Height of the packed area
+	 */
+	public SkylinePacker(int width, int height) {
+		this.width = oneOrMore(width);
+		this.height = oneOrMore(height);
+		skyline.add(new Segment(0, 0, width));
+	}
+
+	/**
+	 * Allocates a rectangle.
+	 * @param w Width
+	 * @param h Height
+	 * @return Position of the allocated rectangle or {@code null} if it does not fit
+	 */
+	public Point add(int w, int h) {
+		// Find lowest position
+		int best = -1;
+		int bestTop = Integer.MAX_VALUE;
+		for(int n = 0; n < skyline.size(); ++n) {
+			final int y = fit(n, w);
+			if((y >= 0) && (y + h <= height) && (y + h < bestTop)) {
+				best = n;
+				bestTop = y + h;
+			}
+		}
+		if(best == -1) {
+			return null;
+		}
+
+		// Update skyline
+		final Segment start = skyline.get(best);
+		final Point pos = new Point(start.x, bestTop - h);
+		insert(best, new Segment(start.x, bestTop, w));
+		return pos;
+	}
+
+	/**
+	 * Determines the lowest vertical position at which a rectangle of the given width can be placed at the start of the given segment.
+	 * @return Vertical position or <code>-1</code> if the rectangle does not fit horizontally
+	 */
+	private int fit(int index, int w) {
+		final int x = skyline.get(index).x;
+		if(x + w > width) {
+			return -1;
+		}
+
+		int y = 0;
+		int remaining = w;
+		for(int n = index; remaining > 0; ++n) {
+			final Segment seg = skyline.get(n);
+			y = Math.max(y, seg.y);
+			remaining -= seg.width;
+		}
+		return y;
+	}
+
+	/**
+	 * Inserts a new segment and trims the segments that it covers.
+	 */
+	private void insert(int index, Segment seg) {
+		skyline.add(index, seg);
+
+		// Shrink or remove covered segments
+		final int right = seg.x + seg.width;
+		final int next = index + 1;
+		while(next < skyline.size()) {
+			final Segment prev = skyline.get(next);
+			if(prev.x >= right) {
+				break;
+			}
+			final int shrink = right - prev.x;
+			if(shrink < prev.width) {
+				prev.x += shrink;
+				prev.width -= shrink;
+				break;
+			}
+			skyline.remove(next);
+		}
+
+		// Merge adjacent segments at the same height
+		for(int n = 0; n < skyline.size() - 1; ++n) {
+			final Segment a = skyline.get(n);
+			final Segment b = skyline.get(n + 1);
+			if(a.y == b.y) {
+				a.width += b.width;
+				skyline.remove(n + 1);
+				--n;
+			}
+		}
+	}
+
+	/**
+	 * Packs the given rectangles into the smallest power-of-two square that fits.
+	 * <p>
+	 * Rectangles are allocated in order of decreasing height.  Empty rectangles are ignored and are allocated at the origin.
+	 * <p>
+	 * @param sizes		Rectangle dimensions
+	 * @param max		Maximum size of the packed area
+	 * @param pos		Returned positions of each rectangle
+	 * @return Size of the packed area
+	 * @throws IllegalArgumentException if the rectangles cannot be packed into the maximum size
+	 */
+	public static int pack(Dimension[] sizes, int max, Point[] pos) {
+		// Sort by height
+		final Integer[] order = new Integer[sizes.length];
+		int area = 0;
+		for(int n = 0; n < sizes.length; ++n) {
+			order[n] = n;
+			area += sizes[n].width * sizes[n].height;
+		}
+		Arrays.sort(order, Comparator.comparingInt((Integer n) -> sizes[n].height).reversed());
+
+		// Start from the smallest power-of-two that could contain the total area
+		int dim = Integer.highestOneBit(Math.max(1, (int) Math.sqrt(area)));
+		while(dim <= max) {
+			if(pack(sizes, order, dim, pos)) {
+				return dim;
+			}
+			dim <<= 1;
+		}
+
+		throw new IllegalArgumentException("Cannot pack glyphs into maximum size: " + max);
+	}
+
+	/**
+	 * Packs the given rectangles into an area of the given size.
+	 * @return Whether all rectangles were allocated
+	 */
+	private static boolean pack(Dimension[] sizes, Integer[] order, int dim, Point[] pos) {
+		final var packer = new SkylinePacker(dim, dim);
+		for(int n : order) {
+			final var size = sizes[n];
+			if((size.width == 0) || (size.height == 0)) {
+				pos[n] = new Point();
+				continue;
+			}
+			final Point p = packer.add(size.width, size.height);
+			if(p == null) {
+				return false;
+			}
+			pos[n] = p;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,334 @@
+package org.sarge.jove.demo.text;
+
+import static org.sarge.lib.util.Check.*;
+
+import java.nio.*;
+import java.util.*;
+import java.util.logging.Logger;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.sarge.jove.common.Bufferable;
+import org.sarge.jove.platform.vulkan.*;
+import org.sarge.jove.platform.vulkan.core.*;
+import org.sarge.jove.platform.vulkan.memory.*;
+
+/**
+ * A <i>staging arena</i> is a persistently-mapped host-visible buffer that is sub-allocated for transfers to device-local resources.
+ * <p>
+ * The arena is used as a <i>ring</i>, i.e. regions are allocated from the head of the ring and reclaimed from the tail.
+ * Regions allocated since the previous submission are associated with the fence of the next submission by {@link #submit(Fence)}.
+ * Once that fence has been signalled the regions are reclaimed by {@link #reclaim()}, i.e. no staging buffer is allocated or released per upload.
+ * A region never wraps around the end of the buffer, any remaining space at the end is skipped.
+ * <p>
+ * The arena records the high-water mark of the allocated space which can be used to size the arena for a given application.
+ * <p>
+ * Usage:
+ * <pre>
+ * StagingArena arena = StagingArena.create(dev, allocator, 1 << 24);
+ *
+ * // Write data to a region
+ * Region region = arena.write(data);
+ * Command copy = region.copy(destination);
+ *
+ * // Submit work
+ * ...
+ * arena.submit(fence);
+ *
+ * // Reclaim completed regions
+ * arena.reclaim();
+ * </pre>
+ * <p>
+ * @author Sarge
+ */
+public class StagingArena {
+	private static final Logger LOG = Logger.getLogger(StagingArena.class.getName());
+
+	/**
+	 * Default alignment of a region, i.e. satisfies the offset alignment of buffer-to-image copies for all formats used by this application.
+	 */
+	public static final int ALIGNMENT = 16;
+
+	/**
+	 * Creates a staging arena.
+	 * @param dev				Logical device
+	 * @param allocator			Memory allocator
+	 * @param capacity			Capacity (bytes)
+	 * @return Staging arena
+	 */
+	public static StagingArena create(LogicalDevice dev, Allocator allocator, long capacity) {
+		final var props = new MemoryProperties.Builder<VkBufferUsageFlag>()
+				.usage(VkBufferUsageFlag.TRANSFER_SRC)
+				.required(VkMemoryProperty.HOST_VISIBLE)
+				.required(VkMemoryProperty.HOST_COHERENT)
+				.build();
+
+		final VulkanBuffer buffer = VulkanBuffer.create(dev, allocator, oneOrMore(capacity), props);
+		return new StagingArena(buffer);
+	}
+
+	/**
+	 * A <i>region</i> is an allocated range of the arena.
+	 * @param buffer		Staging buffer
+	 * @param offset		Offset into the buffer
+	 * @param length		Length of this region (bytes)
+	 * @param data			Mapped region
+	 */
+	public record Region(VulkanBuffer buffer, long offset, long length, ByteBuffer data) {
+		/**
+		 * Creates a command to copy this region to the given buffer.
+		 * @param dest Destination buffer
+		 * @return Copy command
+		 * @throws IllegalArgumentException if the destination is too small
+		 */
+		public Command copy(VulkanBuffer dest) {
+			if(dest.length() < length) throw new IllegalArgumentException("Destination buffer is too small");
+			final var copy = new VkBufferCopy();
+			copy.srcOffset = offset;
+			copy.dstOffset = 0;
+			copy.size = length;
+			final VkBufferCopy[] array = {copy};
+			return (lib, cmd) -> lib.vkCmdCopyBuffer(cmd, buffer, dest, 1, array);
+		}
+	}
+
+	/**
+	 * A submission that uses the regions up to the given head of the ring.
+	 */
+	private record Pending(Fence fence, long head) {
+	}
+
+	private final VulkanBuffer buffer;
+	private final ByteBuffer mapped;
+	private final Deque<Pending> pending = new ArrayDeque<>();
+	private long head, tail;
+	private boolean full, unsubmitted;
+	private long mark, allocations, stalls;
+
+	/**
+	 * Constructor.
+	 * @param buffer Host-visible staging buffer
+	 */
+	public StagingArena(VulkanBuffer buffer) {
+		this.buffer = notNull(buffer);
+		this.mapped = buffer.buffer();
+	}
+
+	/**
+	 * @return Staging buffer
+	 */
+	public VulkanBuffer buffer() {
+		return buffer;
+	}
+
+	/**
+	 * @return Capacity of this arena (bytes)
+	 */
+	public long capacity() {
+		return buffer.length();
+	}
+
+	/**
+	 * @return Allocated space including regions that are awaiting completion (bytes)
+	 */
+	public synchronized long used() {
+		if(full) {
+			return capacity();
+		}
+		else
+		if(head >= tail) {
+			return head - tail;
+		}
+		else {
+			// Note that any space skipped at the end of the buffer is included
+			return capacity() - tail + head;
+		}
+	}
+
+	/**
+	 * @return High-water mark of the allocated space (bytes)
+	 */
+	public synchronized long mark() {
+		return mark;
+	}
+
+	/**
+	 * @return Number of allocated regions
+	 */
+	public synchronized long allocations() {
+		return allocations;
+	}
+
+	/**
+	 * @return Number of allocations that could not be satisfied without waiting for pending work
+	 */
+	public synchronized long stalls() {
+		return stalls;
+	}
+
+	/**
+	 * Allocates a region.
+	 * If the arena is full the pending submissions are reclaimed and, if necessary, waited upon in order.
+	 * @param length			Length of the region (bytes)
+	 * @param alignment			Region alignment
+	 * @return New region
+	 * @throws IllegalArgumentException if the region is larger than this arena
+	 * @throws IllegalStateException if the region cannot be allocated, i.e. the arena is full of regions that have not been submitted
+	 */
+	public synchronized Region allocate(long length, int alignment) {
+		oneOrMore(length);
+		oneOrMore(alignment);
+		if(length > capacity()) throw new IllegalArgumentException(String.format("Region is larger than the staging arena: length=%d capacity=%d", length, capacity()));
+
+		// Allocate region, reclaiming completed submissions as required
+		long offset = find(length, alignment);
+		if(offset < 0) {
+			reclaim();
+			offset = find(length, alignment);
+		}
+
+		// Otherwise wait for pending work
+		if(offset < 0) {
+			++stalls;
+			while((offset < 0) && !pending.isEmpty()) {
+				pending.peekFirst().fence().waitReady();
+				reclaim();
+				offset = find(length, alignment);
+			}
+		}
+		if(offset < 0) throw new IllegalStateException(String.format("Staging arena exhausted: length=%d arena=%s", length, this));
+
+		// Allocate region
+		head = offset + length;
+		full = (head == tail);
+		unsubmitted = true;
+		mark = Math.max(mark, used());
+		++allocations;
+
+		// Create region
+		final ByteBuffer data = mapped.slice((int) offset, (int) length).order(ByteOrder.nativeOrder());
+		return new Region(buffer, offset, length, data);
+	}
+
+	/**
+	 * Finds space for a region of the given length.
+	 * @return Offset of the region or {@code -1} if there is no space available
+	 */
+	private long find(long length, int alignment) {
+		if(full) {
+			return -1;
+		}
+
+		final long start = align(head, alignment);
+		if(head >= tail) {
+			// Allocate from the end of the buffer
+			if(start + length <= capacity()) {
+				return start;
+			}
+
+			// Otherwise wrap to the start
+			if(length <= tail) {
+				return 0;
+			}
+		}
+		else
+		if(start + length <= tail) {
+			// Allocate up to the tail
+			return start;
+		}
+
+		return -1;
+	}
+
+	private static long align(long offset, int alignment) {
+		final long rem = offset % alignment;
+		return rem == 0 ? offset : offset + alignment - rem;
+	}
+
+	/**
+	 * Allocates a region and writes the given data.
+	 * @param data Data
+	 * @return New region
+	 * @see #allocate(long, int)
+	 */
+	public Region write(Bufferable data) {
+		final Region region = allocate(data.length(), ALIGNMENT);
+		data.buffer(region.data());
+		return region;
+	}
+
+	/**
+	 * Associates the regions allocated since the previous submission with the given fence.
+	 * Does nothing if no regions have been allocated.
+	 * <p>
+	 * The arena does not take ownership of the fence, however the caller must not destroy the fence until it has been reclaimed, see {@link #isPending(Fence)}.
+	 * <p>
+	 * @param fence Fence that is signalled when the submission using the regions has completed
+	 */
+	public synchronized void submit(Fence fence) {
+		notNull(fence);
+		if(!unsubmitted) {
+			return;
+		}
+		pending.addLast(new Pending(fence, head));
+		unsubmitted = false;
+	}
+
+	/**
+	 * @param fence Fence
+	 * @return Whether the given fence is associated with regions that have not been reclaimed
+	 */
+	public synchronized boolean isPending(Fence fence) {
+		for(Pending p : pending) {
+			if(p.fence() == fence) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Reclaims the regions of submissions that have completed.
+	 * Submissions are reclaimed in order, i.e. reclamation stops at the first fence that has not been signalled.
+	 */
+	public synchronized void reclaim() {
+		while(!pending.isEmpty()) {
+			// Stop at first incomplete submission
+			final Pending next = pending.peekFirst();
+			if(!next.fence().signalled()) {
+				break;
+			}
+			pending.removeFirst();
+
+			// Release space up to the head of this submission
+			tail = next.head();
+			full = false;
+		}
+
+		// Reset an empty ring
+		if((head == tail) && !full) {
+			head = 0;
+			tail = 0;
+		}
+	}
+
+	/**
+	 * Releases this arena and logs the allocation statistics.
+	 * Note that the caller is responsible for ensuring any pending work has completed.
+	 */
+	public synchronized void destroy() {
+		LOG.info("Staging arena: " + this);
+		pending.clear();
+		buffer.destroy();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return new ToStringBuilder(this)
+				.append("capacity", capacity())
+				.append("used", used())
+				.append("mark", mark)
+				.append("allocations", allocations)
+				.append("stalls", stalls)
+				.build();
+	}
+}
@@ -0,0 +1,443 @@
+package org.sarge.jove.demo.text;
+
+import static org.sarge.lib.util.Check.*;
+
+import java.nio.*;
+import java.util.*;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.sarge.jove.demo.text.StagingArena.Region;
+import org.sarge.jove.platform.vulkan.*;
+import org.sarge.jove.platform.vulkan.core.*;
+import org.sarge.jove.platform.vulkan.memory.*;
+import org.sarge.jove.platform.vulkan.pipeline.Barrier;
+
+/**
+ * A <i>text batch</i> renders many independent text labels with a single indirect draw command.
+ * <p>
+ * The glyph instance records of all labels are packed into a shared device-local instance buffer.
+ * Each label is allocated a contiguous <i>slice</i> of the instance buffer and a <i>slot</i> in an array of {@link VkDrawIndirectCommand} records.
+ * The batch is rendered by a single {@code vkCmdDrawIndirect} for all slots, where unused slots draw no instances.
+ * Since the draw count is the fixed number of slots the rendering commands do not need to be re-recorded when labels are added or removed.
+ * <p>
+ * Labels are added, updated and removed on the host.
+ * Only the slices and slots of labels that have changed are copied to the device by the {@link #upload(StagingArena)} command.
+ * A label is reallocated to a new slice if it is updated with text that is longer than its current slice.
+ * <p>
+ * Changes are uploaded by a {@link FrameSequence.Task} before each frame is recorded, i.e. labels should only be modified by the thread that composes the frames.
+ * The upload is submitted by the {@link UploadBatch} on the same queue ahead of the frame, where the barriers recorded by the upload command synchronise the copy with previous and subsequent draws.
+ * <p>
+ * Note that the indirect draw requires the {@code multiDrawIndirect} and {@code drawIndirectFirstInstance} device features.
+ * <p>
+ * Usage:
+ * <pre>
+ * TextBatch batch = TextBatch.create(dev, allocator, metrics, 256, 16384);
+ *
+ * // Add labels
+ * Label label = batch.add("text", x, y, scale);
+ *
+ * // Update and upload changes before the frame
+ * batch.update(label, "changed");
+ * if(batch.isDirty()) {
+ *     uploads.add(batch.upload(arena));
+ * }
+ * uploads.submit();
+ *
+ * // Render batch
+ * buffer.add(batch.bind()).add(batch.draw());
+ * </pre>
+ * <p>
+ * @see GlyphInstanceBuilder
+ * @author Sarge
+ */
+public class TextBatch {
+	/**
+	 * Size of an indirect draw command (bytes).
+	 */
+	public static final int COMMAND = 4 * Integer.BYTES;
+
+	/**
+	 * Creates a text batch.
+	 * @param dev			Logical device
+	 * @param allocator		Memory allocator
+	 * @param metrics		Glyph metrics
+	 * @param slots			Maximum number of labels
+	 * @param capacity		Total number of glyph instances
+	 * @return Text batch
+	 */
+	public static TextBatch create(LogicalDevice dev, Allocator allocator, GlyphMetrics metrics, int slots, int capacity) {
+		final VulkanBuffer instances = buffer(dev, allocator, (long) oneOrMore(capacity) * GlyphInstanceBuilder.STRIDE, VkBufferUsageFlag.VERTEX_BUFFER);
+		final VulkanBuffer indirect = buffer(dev, allocator, (long) oneOrMore(slots) * COMMAND, VkBufferUsageFlag.INDIRECT_BUFFER);
+		return new TextBatch(metrics, instances, indirect, slots, capacity);
+	}
+
+	/**
+	 * Creates a device-local transfer destination.
+	 */
+	private static VulkanBuffer buffer(LogicalDevice dev, Allocator allocator, long len, VkBufferUsageFlag usage) {
+		final var props = new MemoryProperties.Builder<VkBufferUsageFlag>()
+				.usage(VkBufferUsageFlag.TRANSFER_DST)
+				.usage(usage)
+				.required(VkMemoryProperty.DEVICE_LOCAL)
+				.build();
+
+		return VulkanBuffer.create(dev, allocator, len, props);
+	}
+
+	/**
+	 * A <i>label</i> is an independent text object in this batch.
+	 */
+	public final class Label {
+		private final int slot;
+		private final GlyphInstanceBuilder builder;
+		private int offset;
+		private int capacity;
+		private int count;
+		private boolean removed;
+
+		private Label(int slot, float x, float y, float scale) {
+			this.slot = slot;
+			this.builder = new GlyphInstanceBuilder(metrics).origin(x, y).scale(scale);
+		}
+
+		private TextBatch batch() {
+			return TextBatch.this;
+		}
+
+		/**
+		 * @return Indirect draw slot of this label
+		 */
+		public int slot() {
+			return slot;
+		}
+
+		/**
+		 * @return Number of glyph instances
+		 */
+		public int count() {
+			return count;
+		}
+
+		/**
+		 * Writes the instance records and draw command of this label.
+		 */
+		private void write(CharSequence text) {
+			// Write glyph instances to slice
+			final ByteBuffer bb = mirror.slice(offset * GlyphInstanceBuilder.STRIDE, capacity * GlyphInstanceBuilder.STRIDE).order(ByteOrder.nativeOrder());
+			count = builder.write(text, bb);
+
+			// Write draw command
+			command(slot, count, offset);
+			changed.add(this);
+		}
+
+		@Override
+		public String toString() {
+			return new ToStringBuilder(this)
+					.append("slot", slot)
+					.append("offset", offset)
+					.append("capacity", capacity)
+					.append("count", count)
+					.build();
+		}
+	}
+
+	private final GlyphMetrics metrics;
+	private final VulkanBuffer instances;
+	private final VulkanBuffer indirect;
+	private final int slots;
+	private final ByteBuffer mirror;
+	private final ByteBuffer commands;
+	private final BitSet used;
+	private final TreeMap<Integer, Integer> free = new TreeMap<>();
+	private final Set<Label> changed = new LinkedHashSet<>();
+	private final BitSet dirty;
+
+	/**
+	 * Constructor.
+	 * @param metrics		Glyph metrics
+	 * @param instances		Instance buffer
+	 * @param indirect		Indirect draw buffer
+	 * @param slots			Maximum number of labels
+	 * @param capacity		Total number of glyph instances
+	 * @throws IllegalArgumentException if a buffer is too small
+	 */
+	public TextBatch(GlyphMetrics metrics, VulkanBuffer instances, VulkanBuffer indirect, int slots, int capacity) {
+		if(instances.length() < (long) capacity * GlyphInstanceBuilder.STRIDE) throw new IllegalArgumentException("Instance buffer is too small");
+		if(indirect.length() < (long) slots * COMMAND) throw new IllegalArgumentException("Indirect buffer is too small");
+		this.metrics = notNull(metrics);
+		this.instances = instances;
+		this.indirect = indirect;
+		this.slots = oneOrMore(slots);
+		this.mirror = ByteBuffer.allocate(oneOrMore(capacity) * GlyphInstanceBuilder.STRIDE).order(ByteOrder.nativeOrder());
+		this.commands = ByteBuffer.allocate(slots * COMMAND).order(ByteOrder.nativeOrder());
+		this.used = new BitSet(slots);
+		this.dirty = new BitSet(slots);
+		free.put(0, capacity);
+
+		// Init empty draw commands
+		for(int n = 0; n < slots; ++n) {
+			command(n, 0, 0);
+		}
+	}
+
+	/**
+	 * @return Maximum number of labels
+	 */
+	public int slots() {
+		return slots;
+	}
+
+	/**
+	 * @return Number of labels
+	 */
+	public int size() {
+		return used.cardinality();
+	}
+
+	/**
+	 * @return Command to bind the instance buffer of this batch
+	 */
+	public Command bind() {
+		return new VertexBuffer(instances).bind(0);
+	}
+
+	/**
+	 * Adds a label to this batch.
+	 * @param text		Text
+	 * @param x			X origin
+	 * @param y			Y origin
+	 * @param scale		Scale
+	 * @return New label
+	 * @throws IllegalStateException if the batch is full
+	 */
+	public Label add(CharSequence text, float x, float y, float scale) {
+		// Allocate slot
+		final int slot = used.nextClearBit(0);
+		if(slot >= slots) throw new IllegalStateException("Text batch is full");
+
+		// Allocate slice and write label
+		final Label label = new Label(slot, x, y, scale);
+		allocate(label, text.length());
+		used.set(slot);
+		label.write(text);
+		return label;
+	}
+
+	/**
+	 * Updates the text of a label.
+	 * @param label		Label
+	 * @param text		New text
+	 * @throws IllegalArgumentException if the label has been removed
+	 * @throws IllegalStateException if there is no space for the new text
+	 */
+	public void update(Label label, CharSequence text) {
+		check(label);
+
+		// Reallocate slice if the text does not fit
+		if(text.length() > label.capacity) {
+			release(label);
+			allocate(label, text.length());
+		}
+
+		// Write label
+		label.write(text);
+	}
+
+	/**
+	 * Removes a label from this batch.
+	 * @param label Label to remove
+	 * @throws IllegalArgumentException if the label has already been removed
+	 */
+	public void remove(Label label) {
+		check(label);
+		release(label);
+		used.clear(label.slot);
+		command(label.slot, 0, 0);
+		changed.remove(label);
+		label.removed = true;
+	}
+
+	private void check(Label label) {
+		if(label.removed || (label.batch() != this)) throw new IllegalArgumentException("Invalid label: " + label);
+	}
+
+	/**
+	 * Allocates a slice for a label from the first free range that is large enough.
+	 */
+	private void allocate(Label label, int len) {
+		final int capacity = Math.max(1, len);
+		for(var entry : free.entrySet()) {
+			final int start = entry.getKey();
+			final int size = entry.getValue();
+			if(size >= capacity) {
+				free.remove(start);
+				if(size > capacity) {
+					free.put(start + capacity, size - capacity);
+				}
+				label.offset = start;
+				label.capacity = capacity;
+				return;
+			}
+		}
+		throw new IllegalStateException("No space for label in text batch: length=" + len);
+	}
+
+	/**
+	 * Releases the slice of a label and merges adjacent free ranges.
+	 */
+	private void release(Label label) {
+		int start = label.offset;
+		int size = label.capacity;
+
+		// Merge with following range
+		final Integer next = free.get(start + size);
+		if(next != null) {
+			free.remove(start + size);
+			size += next;
+		}
+
+		// Merge with preceding range
+		final var prev = free.floorEntry(start);
+		if((prev != null) && (prev.getKey() + prev.getValue() == start)) {
+			start = prev.getKey();
+			size += prev.getValue();
+		}
+
+		free.put(start, size);
+		label.capacity = 0;
+	}
+
+	/**
+	 * Writes the draw command for the given slot.
+	 */
+	private void command(int slot, int count, int first) {
+		commands
+				.position(slot * COMMAND)
+				.putInt(GlyphInstanceBuilder.QUAD)
+				.putInt(count)
+				.putInt(0)
+				.putInt(first);
+		dirty.set(slot);
+	}
+
+	/**
+	 * @return Whether any labels have changed since the previous upload
+	 */
+	public boolean isDirty() {
+		return !dirty.isEmpty();
+	}
+
+	/**
+	 * Writes the changed slices and draw commands to the staging arena and creates the command to copy them to this batch.
+	 * <p>
+	 * The caller is responsible for associating the arena with the fence of the submission that uses the returned command, see {@link StagingArena#submit(Fence)}.
+	 * <p>
+	 * @param arena Staging arena
+	 * @return Upload command
+	 * @throws IllegalStateException if the batch has not changed
+	 */
+	public Command upload(StagingArena arena) {
+		if(!isDirty()) throw new IllegalStateException("Text batch has not changed");
+
+		// Determine length of changed data
+		long total = 0;
+		for(Label label : changed) {
+			total += label.count * GlyphInstanceBuilder.STRIDE;
+		}
+		total += dirty.cardinality() * COMMAND;
+
+		// Allocate staging region
+		final Region staging = arena.allocate(total, StagingArena.ALIGNMENT);
+		final ByteBuffer bb = staging.data();
+
+		// Copy changed slices
+		final List<VkBufferCopy> slices = new ArrayList<>();
+		for(Label label : changed) {
+			if(label.count > 0) {
+				final int len = label.count * GlyphInstanceBuilder.STRIDE;
+				slices.add(copy(staging, bb, mirror, label.offset * GlyphInstanceBuilder.STRIDE, len));
+			}
+		}
+
+		// Copy runs of changed draw commands
+		final List<VkBufferCopy> draw = new ArrayList<>();
+		for(int start = dirty.nextSetBit(0); start >= 0; ) {
+			final int end = dirty.nextClearBit(start);
+			draw.add(copy(staging, bb, commands, start * COMMAND, (end - start) * COMMAND));
+			start = dirty.nextSetBit(end);
+		}
+		changed.clear();
+		dirty.clear();
+
+		// Create upload command
+		final VkBufferCopy[] a = slices.toArray(VkBufferCopy[]::new);
+		final VkBufferCopy[] b = draw.toArray(VkBufferCopy[]::new);
+		return (lib, buffer) -> {
+			// Wait for previous frames to read the batch
+			new Barrier.Builder()
+					.source(VkPipelineStage.VERTEX_INPUT)
+					.source(VkPipelineStage.DRAW_INDIRECT)
+					.destination(VkPipelineStage.TRANSFER)
+					.build()
+					.record(lib, buffer);
+
+			// Copy changed data
+			if(a.length > 0) {
+				lib.vkCmdCopyBuffer(buffer, staging.buffer(), instances, a.length, a);
+			}
+			lib.vkCmdCopyBuffer(buffer, staging.buffer(), indirect, b.length, b);
+
+			// Make changes visible to the draw
+			new Barrier.Builder()
+					.source(VkPipelineStage.TRANSFER)
+					.destination(VkPipelineStage.VERTEX_INPUT)
+					.destination(VkPipelineStage.DRAW_INDIRECT)
+					.memory()
+						.source(VkAccess.TRANSFER_WRITE)
+						.destination(VkAccess.VERTEX_ATTRIBUTE_READ)
+						.destination(VkAccess.INDIRECT_COMMAND_READ)
+						.build()
+					.build()
+					.record(lib, buffer);
+		};
+	}
+
+	/**
+	 * Writes a range of host data to the staging region and creates the corresponding copy region.
+	 */
+	private static VkBufferCopy copy(Region staging, ByteBuffer bb, ByteBuffer src, int offset, int len) {
+		final int pos = bb.position();
+		bb.put(src.slice(offset, len));
+
+		final var copy = new VkBufferCopy();
+		copy.srcOffset = staging.offset() + pos;
+		copy.dstOffset = offset;
+		copy.size = len;
+		return copy;
+	}
+
+	/**
+	 * @return Command to draw all labels in this batch
+	 */
+	public Command draw() {
+		return (lib, buffer) -> lib.vkCmdDrawIndirect(buffer, indirect, 0, slots, COMMAND);
+	}
+
+	/**
+	 * Releases the buffers of this batch.
+	 */
+	public void destroy() {
+		instances.destroy();
+		indirect.destroy();
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this)
+				.append("labels", size())
+				.append("slots", slots)
+				.append("free", free.values().stream().mapToInt(Integer::intValue).sum())
+				.build();
+	}
+}
@@ -15,12 +15,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.DestructionAwareBeanPostProcessor;
 import org.springframework.boot.*;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.*;
 
 @SpringBootApplication
 public class TextDemo {
 	@Autowired private LogicalDevice dev;
-	@Autowired private RenderLoop loop;
+	@Autowired(required = false) private RenderLoop loop;
+	@Autowired(required = false) private EventLoop events;
 
 	@Bean
 	public static DataSource classpath() {
@@ -33,21 +34,23 @@ public class TextDemo {
 	}
 
 	@Bean
-	static CommandLineRunner runner(Desktop desktop) {
-		return args -> {
-			while(true) {
-				desktop.poll();
-			}
-		};
+	@Profile("!offscreen")
+	static CommandLineRunner runner(EventLoop events) {
+		return args -> events.run();
 	}
 
 	@PreDestroy
 	void destroy() {
-		loop.stop();
+		if(loop != null) {
+			loop.stop();
+		}
+		if(events != null) {
+			events.stop();
+		}
 		dev.waitIdle();
 	}
 
-	@Autowired
+	@Autowired(required = false)
 	void listener(Window window) {
 		window.keyboard().keyboard().bind(button -> System.exit(0));
 	}
@@ -1,103 +1,236 @@
 package org.sarge.jove.demo.text;
 
-import java.io.IOException;
+import java.awt.Font;
+import java.io.*;
 
+import org.sarge.jove.common.*;
+import org.sarge.jove.demo.text.StagingArena.Region;
 import org.sarge.jove.io.*;
 import org.sarge.jove.platform.vulkan.*;
 import org.sarge.jove.platform.vulkan.core.*;
 import org.sarge.jove.platform.vulkan.image.*;
 import org.sarge.jove.platform.vulkan.image.Image.Descriptor;
+import org.sarge.jove.platform.vulkan.image.ImageTransferCommand.CopyRegion;
 import org.sarge.jove.platform.vulkan.memory.*;
 import org.sarge.jove.platform.vulkan.pipeline.Barrier;
 import org.sarge.jove.platform.vulkan.util.FormatBuilder;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.*;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.*;
+import org.springframework.core.annotation.Order;
 
 @Configuration
 public class TextureConfiguration {
+	/**
+	 * Component mapping for a single-channel coverage texture, i.e. swizzles coverage into the alpha channel.
+	 */
+	private static final ComponentMapping COVERAGE = new ComponentMapping(VkComponentSwizzle.ONE, VkComponentSwizzle.ONE, VkComponentSwizzle.ONE, VkComponentSwizzle.R);
+
 	@Autowired private LogicalDevice dev;
+	@Value("${texture.mipmap:true}") private boolean mipmap;
+	@Value("${texture.compressed:false}") private boolean compressed;
 
 	@Bean
-	Sampler sampler() {
+	Sampler sampler(View texture) {
+		final int levels = texture.image().descriptor().levelCount();
 		return new Sampler.Builder()
 				.anisotropy(8)
+				.mipmap(VkSamplerMipmapMode.LINEAR)
+				.maxLod(levels - 1)
 				.build(dev);
 	}
 
 	@Bean
-	View texture(Command.Pool graphics, Allocator allocator) throws IOException {
+	View texture(GlyphMetrics metrics, StagingArena arena, UploadBatch uploads, Allocator allocator) throws IOException {
+		// Delegate to compressed texture
+		if(compressed) {
+			return compressed(arena, uploads, allocator);
+		}
+
 		// Load texture image
 		final var loader = new ResourceLoaderAdapter<>(new ClasspathDataSource(), new NativeImageLoader());
 		final ImageData image = loader.load("DemoFont.png");
 
-		// Determine image format
-		final VkFormat format = FormatBuilder.format(image.layout());
+		// Determine image format (single-channel coverage textures are uploaded as R8)
+		final boolean coverage = image.channels().length() == 1;
+		final VkFormat format = coverage ? VkFormat.R8_UNORM : FormatBuilder.format(image.layout());
 //		final VkFormat format = VkFormat.R8G8B8A8_UNORM;
 //System.err.println("IMAGE="+format);
 
+		// Determine number of mipmap levels (limited to the glyph tile size to prevent bleeding between glyphs)
+		final int tile = image.size().width() / metrics.tiles();
+		final int levels = mipmap ? MipmapGenerator.levels(image.size(), tile) : 1;
+
 		// Create descriptor
 		final Descriptor descriptor = new Descriptor.Builder()
 				.type(VkImageType.TWO_D)
 				.aspect(VkImageAspect.COLOR)
 				.extents(image.size())
 				.format(format)
+				.mipLevels(levels)
+				.build();
+
+		// Create texture
+		final Image texture = create(descriptor, allocator);
+		prepare(texture, uploads);
+
+		// Write image to staging arena
+		final Region staging = arena.write(image.data());
+
+		// Copy staging to texture
+		final ImageTransferCommand copy = new ImageTransferCommand.Builder()
+				.buffer(staging.buffer())
+				.image(texture)
+				.layout(VkImageLayout.TRANSFER_DST_OPTIMAL)
+				.region(region(staging, descriptor))
+				.build();
+
+		// Generate mipmaps and transition to sampled image
+		uploads
+				.add(copy)
+				.add(new MipmapGenerator(texture));
+
+		// Create texture view
+		return new View.Builder(texture)
+				.mapping(coverage ? COVERAGE : ComponentMapping.of(image.channels()))
+				.build(dev);
+	}
+
+	@Bean
+	@ConditionalOnProperty({"text.dynamic", "text.cache"})
+	static GlyphCache cache(@Value("${text.cache.font:Dialog}") String name, @Value("${text.cache.point:24}") int point, @Value("${text.cache.size:1024}") int size) {
+		// Init generator for glyph tiles
+		final var generator = new TextureFontGenerator()
+				.size(512)
+				.tiles(16);
+
+		// Create glyph cache
+		final Font font = new Font(name, Font.PLAIN, point);
+		return new GlyphCache(generator.new Instance(font), size);
+	}
+
+	@Bean("atlas")
+	@ConditionalOnProperty({"text.dynamic", "text.cache"})
+	View atlas(GlyphCache cache, StagingArena arena, UploadBatch uploads, Allocator allocator) {
+		// Create single-channel atlas texture
+		final Descriptor descriptor = new Descriptor.Builder()
+				.type(VkImageType.TWO_D)
+				.aspect(VkImageAspect.COLOR)
+				.extents(new Dimensions(cache.size(), cache.size()))
+				.format(VkFormat.R8_UNORM)
 				.build();
 
+		// Initialise texture (the first upload also transitions the image)
+		final Image texture = create(descriptor, allocator);
+		uploads.add(cache.upload(arena, texture));
+
+		// Create texture view
+		return new View.Builder(texture)
+				.mapping(COVERAGE)
+				.build(dev);
+	}
+
+	@Bean
+	@Order(1)
+	@ConditionalOnProperty({"text.dynamic", "text.cache"})
+	static FrameSequence.Task glyphs(GlyphCache cache, @Qualifier("atlas") View atlas, StagingArena arena, UploadBatch uploads) {
+		return index -> {
+			// Upload glyphs rasterized for this frame
+			if(cache.isDirty()) {
+				uploads.add(cache.upload(arena, atlas.image()));
+			}
+
+			// Start next frame
+			cache.frame();
+		};
+	}
+
+	/**
+	 * Loads a BC4 compressed coverage texture.
+	 */
+	private View compressed(StagingArena arena, UploadBatch uploads, Allocator allocator) throws IOException {
+		// Load compressed texture
+		final CompressedTexture image;
+		try(final InputStream in = new ClasspathDataSource().input("DemoFont.ktx")) {
+			image = new CompressedTexture.Loader().load(in);
+		}
+
+		// Create descriptor (note that mipmaps cannot be blitted for a block compressed format)
+		final Descriptor descriptor = new Descriptor.Builder()
+				.type(VkImageType.TWO_D)
+				.aspect(VkImageAspect.COLOR)
+				.extents(new Dimensions(image.width(), image.height()))
+				.format(image.format())
+				.build();
+
+		// Create texture
+		final Image texture = create(descriptor, allocator);
+		prepare(texture, uploads);
+
+		// Copy compressed blocks directly to texture
+		final Region staging = arena.write(Bufferable.of(image.data()));
+		final ImageTransferCommand copy = new ImageTransferCommand.Builder()
+				.buffer(staging.buffer())
+				.image(texture)
+				.layout(VkImageLayout.TRANSFER_DST_OPTIMAL)
+				.region(region(staging, descriptor))
+				.build();
+
+		// Transition to sampled image
+		uploads
+				.add(copy)
+				.add(new MipmapGenerator(texture));
+
+		// Create texture view
+		return new View.Builder(texture)
+				.mapping(COVERAGE)
+				.build(dev);
+	}
+
+	/**
+	 * Creates a device-local texture image.
+	 * Note that the image is also a transfer source for mipmap generation.
+	 */
+	private Image create(Descriptor descriptor, Allocator allocator) {
 		// Init image memory properties
 		final var props = new MemoryProperties.Builder<VkImageUsageFlag>()
 				.usage(VkImageUsageFlag.TRANSFER_DST)
+				.usage(VkImageUsageFlag.TRANSFER_SRC)
 				.usage(VkImageUsageFlag.SAMPLED)
 				.required(VkMemoryProperty.DEVICE_LOCAL)
 				.build();
 
 		// Create texture
-		final Image texture = new DefaultImage.Builder()
+		return new DefaultImage.Builder()
 				.descriptor(descriptor)
 				.properties(props)
 				.build(dev, allocator);
+	}
+
+	/**
+	 * Creates a copy region for the base level of a texture from the given staging region.
+	 */
+	private static CopyRegion region(Region staging, Descriptor descriptor) {
+		return new CopyRegion.Builder()
+				.offset(staging.offset())
+				.subresource(descriptor)
+				.extents(descriptor.extents())
+				.build();
+	}
 
-		// Prepare texture
-		new Barrier.Builder()
+	/**
+	 * Transitions a new texture image ready for transfer.
+	 */
+	private static void prepare(Image texture, UploadBatch uploads) {
+		final Barrier barrier = new Barrier.Builder()
 				.source(VkPipelineStage.TOP_OF_PIPE)
 				.destination(VkPipelineStage.TRANSFER)
 				.image(texture)
 					.newLayout(VkImageLayout.TRANSFER_DST_OPTIMAL)
 					.destination(VkAccess.TRANSFER_WRITE)
 					.build()
-				.build()
-				.submit(graphics);
-
-		// Create staging buffer
-		final VulkanBuffer staging = VulkanBuffer.staging(dev, allocator, image.data());
-
-		// Copy staging to texture
-		new ImageTransferCommand.Builder()
-				.buffer(staging)
-				.image(texture)
-				.layout(VkImageLayout.TRANSFER_DST_OPTIMAL)
-				.region(image)
-				.build()
-				.submit(graphics);
-
-		// Release staging
-		staging.destroy();
-
-		// Transition to sampled image
-		new Barrier.Builder()
-			.source(VkPipelineStage.TRANSFER)
-			.destination(VkPipelineStage.FRAGMENT_SHADER)
-			.image(texture)
-				.oldLayout(VkImageLayout.TRANSFER_DST_OPTIMAL)
-				.newLayout(VkImageLayout.SHADER_READ_ONLY_OPTIMAL)
-				.source(VkAccess.TRANSFER_WRITE)
-				.destination(VkAccess.SHADER_READ)
-				.build()
-			.build()
-			.submit(graphics);
+				.build();
 
-		// Create texture view
-		return new View.Builder(texture)
-				.mapping(ComponentMapping.of(image.channels()))
-				.build(dev);
+		uploads.add(barrier);
 	}
 }
@@ -3,17 +3,20 @@ package org.sarge.jove.demo.text;
 import static org.sarge.lib.util.Check.*;
 
 import java.awt.*;
-import java.awt.font.TextAttribute;
-import java.awt.image.BufferedImage;
+import java.awt.font.*;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.*;
 import java.io.*;
+import java.nio.file.Files;
 import java.util.*;
 import java.util.List;
-import java.util.concurrent.Callable;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 import java.util.stream.IntStream;
 
 import javax.imageio.ImageIO;
 
-import org.apache.commons.lang3.StringUtils;
 import org.sarge.jove.model.*;
 
 import picocli.CommandLine;
@@ -24,12 +27,21 @@ import picocli.CommandLine.*;
  * @author Sarge
  */
 public class TextureFontGenerator {
+	private static final int MAX_PACKED_SIZE = 16384;
+
 	private int size = 512;
 	private int tiles = 16;
 	private char start = 0;
 	private Color back = new Color(0, 0, 0, 0);
 	private Color text = Color.WHITE;
 	private boolean alias = true;
+	private boolean parallel;
+	private boolean packed;
+	private int padding = 1;
+	private boolean sdf;
+	private int resolution = 8;
+	private float spread = 4;
+	private boolean grayscale;
 
 	/**
 	 * Sets the size of the texture (default is 512 x 512).
@@ -87,13 +99,132 @@ public class TextureFontGenerator {
 		return this;
 	}
 
+	/**
+	 * Sets whether the texture image is rasterized in parallel.
+	 * @param parallel Whether to render in parallel
+	 */
+	public TextureFontGenerator parallel(boolean parallel) {
+		this.parallel = parallel;
+		return this;
+	}
+
+	/**
+	 * Sets whether glyphs are tightly packed into the texture rather than a fixed grid of tiles.
+	 * <p>
+	 * In this mode the texture is the smallest power-of-two square that contains the glyphs.
+	 * Note that the glyph advances are still relative to the configured texture {@link #size(int)} such that the layout of a font is independent of the packing.
+	 * <p>
+	 * @param packed Whether to pack glyphs
+	 * @see GlyphMetrics#isPacked()
+	 */
+	public TextureFontGenerator packed(boolean packed) {
+		this.packed = packed;
+		return this;
+	}
+
+	/**
+	 * Sets the padding around each packed glyph (default is one pixel).
+	 * @param padding Padding (pixels)
+	 */
+	public TextureFontGenerator padding(int padding) {
+		this.padding = zeroOrMore(padding);
+		return this;
+	}
+
+	/**
+	 * Sets whether to generate a <i>signed distance field</i> texture rather than a bitmap.
+	 * <p>
+	 * In this mode each glyph is rasterized at a higher resolution, transformed to a signed distance field and then downsampled to its tile.
+	 * The alpha channel of the resultant texture is the distance to the glyph outline, where 0.5 is the edge of the glyph.
+	 * Note that glyphs that overhang their tiles are clipped and that this mode is not supported for packed glyphs.
+	 * <p>
+	 * @param sdf Whether to generate a distance field
+	 * @see #resolution(int)
+	 * @see #spread(float)
+	 */
+	public TextureFontGenerator sdf(boolean sdf) {
+		this.sdf = sdf;
+		return this;
+	}
+
+	/**
+	 * Sets the resolution scalar for rasterizing distance field glyphs (default is 8).
+	 * @param resolution Resolution scalar
+	 */
+	public TextureFontGenerator resolution(int resolution) {
+		this.resolution = oneOrMore(resolution);
+		return this;
+	}
+
+	/**
+	 * Sets the maximum distance represented by the distance field (default is 4 pixels).
+	 * @param spread Spread (pixels)
+	 */
+	public TextureFontGenerator spread(float spread) {
+		if(spread <= 0) throw new IllegalArgumentException("Spread must be positive");
+		this.spread = spread;
+		return this;
+	}
+
+	/**
+	 * Sets whether to generate an 8-bit grayscale texture image containing only the glyph coverage.
+	 * <p>
+	 * A texture font only requires the alpha channel, i.e. the text colour is applied by the shader.
+	 * The resultant image is a quarter the size of the default RGBA image.
+	 * <p>
+	 * @param grayscale Whether to generate a grayscale image
+	 */
+	public TextureFontGenerator grayscale(boolean grayscale) {
+		this.grayscale = grayscale;
+		return this;
+	}
+
+	/**
+	 * Compresses the coverage of the given texture image to the BC4 format.
+	 * @param image Texture image
+	 * @return Compressed texture
+	 * @see BC4Encoder
+	 */
+	public static CompressedTexture compress(BufferedImage image) {
+		final byte[] coverage = coverage(image);
+		final byte[] data = BC4Encoder.encode(coverage, image.getWidth(), image.getHeight());
+		return new CompressedTexture(image.getWidth(), image.getHeight(), CompressedTexture.COMPRESSED_RED_RGTC1, data);
+	}
+
+	/**
+	 * Determines the quality of a compressed texture.
+	 * @param image				Texture image
+	 * @param compressed		Compressed texture
+	 * @return Peak signal-to-noise ratio (dB)
+	 */
+	public static double psnr(BufferedImage image, CompressedTexture compressed) {
+		final byte[] decoded = BC4Encoder.decode(compressed.data(), compressed.width(), compressed.height());
+		return BC4Encoder.psnr(coverage(image), decoded);
+	}
+
+	/**
+	 * Extracts the coverage of the given texture image, i.e. the alpha channel or the pixels of a grayscale image.
+	 */
+	private static byte[] coverage(BufferedImage image) {
+		final Raster raster = image.getType() == BufferedImage.TYPE_BYTE_GRAY ? image.getRaster() : image.getAlphaRaster();
+		final int w = image.getWidth();
+		final int h = image.getHeight();
+		final int[] samples = raster.getSamples(0, 0, w, h, 0, (int[]) null);
+		final byte[] coverage = new byte[samples.length];
+		for(int n = 0; n < samples.length; ++n) {
+			coverage[n] = (byte) samples[n];
+		}
+		return coverage;
+	}
+
 	/**
 	 * Texture font instance.
 	 */
 	public class Instance {
 		private final Font font;
 		private FontMetrics metrics;
-		private int pairs;
+		private int[] kerning;
+		private float[] regions;
 
 		/**
 		 * Constructor.
@@ -103,56 +234,376 @@ public class TextureFontGenerator {
 			this.font = notNull(font);
 		}
 
-    	/**
-    	 * Generates the texture image for the given font.
-    	 * @return Texture font image
-    	 */
-    	public BufferedImage image() {
-    		// Create texture font image
-    		final var image = new BufferedImage(size, size, BufferedImage.TYPE_4BYTE_ABGR);
-
-    		// Init anti-aliasing
-    		final var g = (Graphics2D) image.getGraphics();
-    		if(alias) {
-    			g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
-    		}
-
-    		// Clear translucent background
-    		g.setBackground(back);
-    		g.clearRect(0, 0, size, size);
-
-    		// Set text colour
-    		g.setFont(font);
-    		g.setColor(text);
-
-    		// Note font metrics for metadata generation
-    		metrics = g.getFontMetrics();
-
-    		// Render character glyphs
-    		final int w = size / tiles;
-    		final int offset = metrics.getAscent();
-    		char ch = start;
-    		for(int r = 0; r < tiles; ++r) {
-    			final int y = r * w + offset;
-    			for(int c = 0; c < tiles; ++c) {
-    				final int x = c * w;
-    				g.drawChars(new char[]{ch}, 0, 1, x, y);
-    				++ch;
-    			}
-    		}
-
-    		/*
-    		TODO - option
-    		g.setColor(Color.CYAN);
-    		for(int n = 0; n < tiles; ++n) {
-    			final int pos = n * w;
-    			g.drawLine(0, pos, size, pos);
-    			g.drawLine(pos, 0, pos, size);
-    		}
-    		*/
-
-    		return image;
-    	}
+		/**
+		 * Generates the texture image for the given font.
+		 * @return Texture font image
+		 * @see TextureFontGenerator#grayscale(boolean)
+		 */
+		public BufferedImage image() {
+			final BufferedImage image = render();
+			if(grayscale) {
+				return grayscale(image);
+			}
+			else {
+				return image;
+			}
+		}
+
+		/**
+		 * Extracts the alpha channel of the given texture image as an 8-bit grayscale image.
+		 * @param image Texture image
+		 * @return Coverage image
+		 */
+		private static BufferedImage grayscale(BufferedImage image) {
+			final var gray = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+			gray.getRaster().setRect(image.getAlphaRaster());
+			return gray;
+		}
+
+		/**
+		 * Renders the texture image.
+		 */
+		private BufferedImage render() {
+			// Delegate to packed glyphs or distance field
+			if(packed) {
+				if(sdf) throw new IllegalStateException("Distance field is not supported for packed glyphs");
+				return pack();
+			}
+			if(sdf) {
+				return distance();
+			}
+
+			// Create texture font image
+			final var image = new BufferedImage(size, size, BufferedImage.TYPE_4BYTE_ABGR);
+			final Graphics2D g = graphics(image);
+
+			// Note font metrics for metadata generation
+			metrics = g.getFontMetrics();
+
+			// Render character glyphs
+			if(parallel) {
+				g.dispose();
+				ForkJoinPool.commonPool().invoke(new Band(image, 0, tiles));
+			}
+			else {
+				render(g, 0, tiles);
+			}
+
+			/*
+			TODO - option
+			g.setColor(Color.CYAN);
+			for(int n = 0; n < tiles; ++n) {
+				final int pos = n * w;
+				g.drawLine(0, pos, size, pos);
+				g.drawLine(pos, 0, pos, size);
+			}
+			*/
+
+			return image;
+		}
+
+		/**
+		 * Generates a texture image with tightly packed glyphs.
+		 * @return Texture font image
+		 * @see SkylinePacker
+		 */
+		private BufferedImage pack() {
+			// Init font metrics
+			final Graphics2D scratch = graphics(new BufferedImage(1, 1, BufferedImage.TYPE_4BYTE_ABGR));
+			metrics = scratch.getFontMetrics();
+			scratch.dispose();
+
+			// Measure glyph bounds
+			final FontRenderContext context = metrics.getFontRenderContext();
+			final int count = tiles * tiles;
+			final Rectangle[] bounds = new Rectangle[count];
+			final Dimension[] sizes = new Dimension[count];
+			final char[] buffer = new char[1];
+			for(int n = 0; n < count; ++n) {
+				buffer[0] = (char) (start + n);
+				bounds[n] = font.createGlyphVector(context, buffer).getGlyphPixelBounds(0, context, 0, 0);
+				sizes[n] = bounds[n].isEmpty() ? new Dimension() : new Dimension(bounds[n].width + 2 * padding, bounds[n].height + 2 * padding);
+			}
+
+			// Pack glyphs
+			final Point[] pos = new Point[count];
+			final int dim = SkylinePacker.pack(sizes, MAX_PACKED_SIZE, pos);
+
+			// Render glyphs
+			final var image = new BufferedImage(dim, dim, BufferedImage.TYPE_4BYTE_ABGR);
+			final Graphics2D g = graphics(image);
+			regions = new float[count * GlyphMetrics.QUAD];
+			for(int n = 0; n < count; ++n) {
+				// Skip empty glyphs
+				final Rectangle rect = bounds[n];
+				if(rect.isEmpty()) {
+					continue;
+				}
+
+				// Render glyph relative to its baseline
+				final int x = pos[n].x + padding;
+				final int y = pos[n].y + padding;
+				buffer[0] = (char) (start + n);
+				g.drawChars(buffer, 0, 1, x - rect.x, y - rect.y);
+
+				// Record bearing relative to the nominal tile and texture region
+				final int index = n * GlyphMetrics.QUAD;
+				regions[index] = rect.x / (float) size;
+				regions[index + 1] = (metrics.getAscent() + rect.y) / (float) size;
+				regions[index + 2] = rect.width / (float) size;
+				regions[index + 3] = rect.height / (float) size;
+				regions[index + 4] = x / (float) dim;
+				regions[index + 5] = y / (float) dim;
+				regions[index + 6] = (x + rect.width) / (float) dim;
+				regions[index + 7] = (y + rect.height) / (float) dim;
+			}
+			g.dispose();
+
+			return image;
+		}
+
+		/**
+		 * Generates a signed distance field texture image.
+		 * @return Texture font image
+		 * @see DistanceField
+		 */
+		private BufferedImage distance() {
+			// Create texture font image
+			final var image = new BufferedImage(size, size, BufferedImage.TYPE_4BYTE_ABGR);
+
+			// Note font metrics for metadata generation
+			final Graphics2D g = graphics(image);
+			metrics = g.getFontMetrics();
+			g.dispose();
+
+			// Init high-resolution font
+			final Font hi = font.deriveFont(font.getSize2D() * resolution);
+			final Graphics2D scratch = new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY).createGraphics();
+			final int ascent = scratch.getFontMetrics(hi).getAscent();
+			scratch.dispose();
+
+			// Generate distance field for each tile
+			IntStream.range(0, tiles * tiles).parallel().forEach(n -> distance(image, hi, ascent, n));
+
+			return image;
+		}
+
+		/**
+		 * Generates the distance field for the given tile.
+		 * @param image			Texture image
+		 * @param hi			High-resolution font
+		 * @param ascent		High-resolution font ascent
+		 * @param index			Tile index
+		 */
+		private void distance(BufferedImage image, Font hi, int ascent, int index) {
+			// Rasterize high-resolution glyph coverage
+			final int w = size / tiles;
+			final int dim = w * resolution;
+			final var glyph = new BufferedImage(dim, dim, BufferedImage.TYPE_BYTE_GRAY);
+			final Graphics2D g = glyph.createGraphics();
+			g.setFont(hi);
+			g.setColor(Color.WHITE);
+			g.drawChars(new char[]{(char) (start + index)}, 0, 1, 0, ascent);
+			g.dispose();
+
+			// Transform to signed distance field
+			final byte[] coverage = ((DataBufferByte) glyph.getRaster().getDataBuffer()).getData();
+			final float[] field = DistanceField.transform(coverage, dim, dim, false);
+
+			// Downsample to tile
+			final byte[] tile = new byte[w * w * 4];
+			final float area = resolution * resolution;
+			for(int y = 0; y < w; ++y) {
+				for(int x = 0; x < w; ++x) {
+					// Average distance over the high-resolution block
+					float sum = 0;
+					for(int dy = 0; dy < resolution; ++dy) {
+						final int row = (y * resolution + dy) * dim + x * resolution;
+						for(int dx = 0; dx < resolution; ++dx) {
+							sum += field[row + dx];
+						}
+					}
+					final float d = sum / area / resolution;
+
+					// Map distance to alpha such that the glyph edge is 0.5
+					final float alpha = Math.max(0, Math.min(1, 0.5f - d / (2 * spread)));
+					final int offset = (y * w + x) * 4;
+					tile[offset] = (byte) text.getRed();
+					tile[offset + 1] = (byte) text.getGreen();
+					tile[offset + 2] = (byte) text.getBlue();
+					tile[offset + 3] = (byte) Math.round(alpha * 255);
+				}
+			}
+
+			// Write tile
+			final int col = index % tiles;
+			final int row = index / tiles;
+			image.getRaster().setDataElements(col * w, row * w, w, w, tile);
+		}
+
+		/**
+		 * Initialises the graphics context for the given image and clears the background.
+		 * @param image Image
+		 * @return Graphics context
+		 */
+		private Graphics2D graphics(BufferedImage image) {
+			// Init anti-aliasing
+			final var g = (Graphics2D) image.getGraphics();
+			if(alias) {
+				g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+			}
+
+			// Clear translucent background
+			g.setBackground(back);
+			g.clearRect(0, 0, image.getWidth(), image.getHeight());
+
+			// Set text colour
+			g.setFont(font);
+			g.setColor(text);
+
+			return g;
+		}
+
+		/**
+		 * Rasterizes a single glyph into a tile-sized image, e.g. for a dynamic glyph atlas.
+		 * <p>
+		 * The glyph is rendered at the same offset as the grid texture, i.e. relative to the top-left of its tile.
+		 * Note that the code-point can be any Unicode character including supplementary characters.
+		 * <p>
+		 * @param codepoint Code-point
+		 * @return Glyph tile
+		 * @see GlyphCache
+		 */
+		public BufferedImage tile(int codepoint) {
+			final int w = size / tiles;
+			final var tile = new BufferedImage(w, w, BufferedImage.TYPE_4BYTE_ABGR);
+			final Graphics2D g = graphics(tile);
+			if(metrics == null) {
+				metrics = g.getFontMetrics();
+			}
+			g.drawString(new String(Character.toChars(codepoint)), 0, metrics.getAscent());
+			g.dispose();
+			return tile;
+		}
+
+		/**
+		 * Determines the advance of the given glyph.
+		 * @param codepoint Code-point
+		 * @return Advance relative to the texture size
+		 */
+		public float advance(int codepoint) {
+			if(metrics == null) {
+				final Graphics2D g = graphics(new BufferedImage(1, 1, BufferedImage.TYPE_4BYTE_ABGR));
+				metrics = g.getFontMetrics();
+				g.dispose();
+			}
+			return metrics.charWidth(codepoint) / (float) size;
+		}
+
+		/**
+		 * @param codepoint Code-point
+		 * @return Whether the font has a glyph for the given code-point
+		 */
+		public boolean contains(int codepoint) {
+			return font.canDisplay(codepoint);
+		}
+
+		/**
+		 * @return Tile size (pixels)
+		 */
+		public int cell() {
+			return size / tiles;
+		}
+
+		/**
+		 * @return Tile size relative to the texture size
+		 */
+		public float extent() {
+			return 1f / tiles;
+		}
+
+		/**
+		 * Renders the character glyphs for the given range of rows.
+		 * @param g			Graphics context
+		 * @param from		Start row
+		 * @param to		End row (exclusive)
+		 */
+		private void render(Graphics2D g, int from, int to) {
+			final int w = size / tiles;
+			final int offset = metrics.getAscent();
+			final char[] buffer = new char[1];
+			char ch = (char) (start + from * tiles);
+			for(int r = from; r < to; ++r) {
+				final int y = r * w + offset;
+				for(int c = 0; c < tiles; ++c) {
+					final int x = c * w;
+					buffer[0] = ch;
+					g.drawChars(buffer, 0, 1, x, y);
+					++ch;
+				}
+			}
+		}
+
+		/**
+		 * A <i>band</i> rasterizes a horizontal strip of tile rows into its own image which is then composed into the texture.
+		 * <p>
+		 * Glyphs can overhang their tiles (e.g. descenders or accents) therefore each band also renders the neighbouring rows that can intersect the strip.
+		 * Glyphs are drawn in the same order and at the same integer offsets as the single-threaded case, so the resultant texture is identical.
+		 * <p>
+		 * Bands are recursively split until the strip is small enough to be rendered by a single worker.
+		 */
+		private class Band extends RecursiveAction {
+			private final BufferedImage image;
+			private final int from, to;
+
+			/**
+			 * Constructor.
+			 * @param image		Texture image
+			 * @param from		Start row
+			 * @param to		End row (exclusive)
+			 */
+			private Band(BufferedImage image, int from, int to) {
+				this.image = image;
+				this.from = from;
+				this.to = to;
+			}
+
+			@Override
+			protected void compute() {
+				final int rows = to - from;
+				if(rows > Math.max(1, tiles / ForkJoinPool.getCommonPoolParallelism())) {
+					final int mid = from + rows / 2;
+					invokeAll(new Band(image, from, mid), new Band(image, mid, to));
+				}
+				else {
+					rasterize();
+				}
+			}
+
+			/**
+			 * Rasterizes this band and copies the result to the texture image.
+			 */
+			private void rasterize() {
+				// Determine strip bounds (the last band also covers any remainder at the bottom of the texture)
+				final int w = size / tiles;
+				final int top = from * w;
+				final int bottom = (to == tiles) ? size : to * w;
+
+				// Determine rows that can overhang this strip
+				final Rectangle2D max = font.getMaxCharBounds(metrics.getFontRenderContext());
+				final int margin = (int) Math.ceil(max.getHeight() / w) + 1;
+
+				// Render strip
+				final var band = new BufferedImage(size, bottom - top, BufferedImage.TYPE_4BYTE_ABGR);
+				final Graphics2D g = graphics(band);
+				g.translate(0, -top);
+				render(g, Math.max(0, from - margin), Math.min(tiles, to + margin));
+				g.dispose();
+
+				// Compose into texture
+				image.getRaster().setDataElements(0, top, band.getRaster());
+			}
+		}
 
     	/**
     	 * Generates the glyph metadata for the given texture font.
@@ -169,6 +620,37 @@ public class TextureFontGenerator {
     		return new GlyphFont(start, glyphs, tiles);
     	}
 
+		/**
+		 * Generates the compact glyph metrics for the given texture font.
+		 * @return Glyph metrics
+		 * @see GlyphMetrics.Loader
+		 */
+		public GlyphMetrics glyphs() {
+			final float[] advances = new float[tiles * tiles];
+			for(int n = 0; n < advances.length; ++n) {
+				advances[n] = metrics.charWidth(start + n) / (float) size;
+			}
+			return new GlyphMetrics(start, tiles, advances, table(), regions);
+		}
+
+		/**
+		 * Generates the kerning table for the given texture font.
+		 * @return Kerning table
+		 */
+		public KerningTable table() {
+			return KerningTable.of(dense(), start, tiles * tiles, size);
+		}
+
+		/**
+		 * Extracts the dense kerning pair table.
+		 */
+		private int[] dense() {
+			if(kerning == null) {
+				kerning = new KerningEngine(metrics, start, tiles * tiles).table();
+			}
+			return kerning;
+		}
+
     	/**
     	 * Determines the end character based on the number of tiles.
     	 */
@@ -182,62 +664,27 @@ public class TextureFontGenerator {
 		Glyph glyph(int ch) {
 			final int advance = metrics.charWidth(ch);
 			final float scaled = advance / (float) size;
-			final Map<Integer, Float> pairs = kerning(ch, advance);
+			final Map<Integer, Float> pairs = kerning(ch);
 			return new Glyph(ch, scaled, pairs);
 		}
 
 		/**
-		 * Determines the kerning pairs for the given character.
-		 * @param ch 			Character
-		 * @param advance		Character advance
+		 * Retrieves the kerning pairs for the given character from the kerning table.
+		 * @param ch Character
 		 * @return Kerning pairs
 		 */
-		private Map<Integer, Float> kerning(int ch, int advance) {
-			// Ignore non-text characters
-			if(!isValid(ch)) {
-				return Map.of();
-			}
-
-			// Init character pair
-			final StringBuilder str = new StringBuilder();
-			str.append((char) ch);
-			str.append(StringUtils.SPACE);
-
-			// Compare characters to determine kerning pairs
-			final Map<Integer, Float> kerning = new HashMap<>();
-			final int end = end();
-			for(char next = start; next < end; ++next) {
-//				// Skip same character
-//				if(ch == next) {
-//					continue;
-//				}
-
-				// Skip non-text characters
-				if(!isValid(next)) {
-					continue;
-				}
-
-				// Determine the total width of the character pair
-				str.setCharAt(1, next);
-				final int total = metrics.stringWidth(str.toString());
-
-				// Kerning pairs will have a different total width than the individual characters
-				final int w = metrics.charWidth(next);
-				if(total != advance + w) {
-					final int k = total - w;
-					kerning.put((int) next, k / (float) size);
-					++pairs;
+		private Map<Integer, Float> kerning(int ch) {
+			final int count = tiles * tiles;
+			final int offset = (ch - start) * count;
+			final int[] dense = dense();
+			final Map<Integer, Float> map = new HashMap<>();
+			for(int n = 0; n < count; ++n) {
+				final int k = dense[offset + n];
+				if(k != KerningEngine.NONE) {
+					map.put(start + n, k / (float) size);
 				}
 			}
-
-			return kerning;
-		}
-
-		/**
-		 * @return Whether this given character is eligible for kerning
-		 */
-		private static boolean isValid(int ch) {
-			return Character.isLetterOrDigit(ch) && !Character.isWhitespace(ch);
+			return map.isEmpty() ? Map.of() : map;
 		}
 	}
 
@@ -256,10 +703,42 @@ public class TextureFontGenerator {
 			ITALIC
 		}
 
-		@Parameters(index="0", description="Name of the font to be generated")
+		/**
+		 * Specification of a font to be generated.
+		 */
+		private record Spec(String name, int point, Style style, String filename) {
+			/**
+			 * Parses a font specification from a manifest entry of the form: <code>name point [style] [filename]</code>
+			 * <p>
+			 * Note that the font name is quoted if it contains whitespace.
+			 * <p>
+			 * @param line Manifest entry
+			 * @return Font specification
+			 * @throws IllegalArgumentException if the entry is invalid
+			 */
+			static Spec parse(String line) {
+				final List<String> tokens = new ArrayList<>();
+				final var matcher = Pattern.compile("\"([^\"]*)\"|(\\S+)").matcher(line);
+				while(matcher.find()) {
+					tokens.add(matcher.group(1) == null ? matcher.group(2) : matcher.group(1));
+				}
+				if((tokens.size() < 2) || (tokens.size() > 4)) throw new IllegalArgumentException("Invalid font specification: " + line);
+				final Style style = tokens.size() > 2 ? Style.valueOf(tokens.get(2).toUpperCase()) : Style.PLAIN;
+				final String filename = tokens.size() > 3 ? tokens.get(3) : null;
+				return new Spec(tokens.get(0), Integer.parseInt(tokens.get(1)), style, filename);
+			}
+		}
+
+		/**
+		 * Generated texture font ready to be written.
+		 */
+		private record Output(String filename, String font, BufferedImage image, GlyphFont metadata, GlyphMetrics glyphs, CompressedTexture compressed, double psnr, int pairs, long elapsed) {
+		}
+
+		@Parameters(index="0", arity="0..1", description="Name of the font to be generated")
 		private String name;
 
-		@Parameters(index="1", description="Point size")
+		@Parameters(index="1", arity="0..1", description="Point size")
 		private int point;
 
 		@Option(names="--style", description="Font style: ${COMPLETION-CANDIDATES}")
@@ -280,15 +759,152 @@ public class TextureFontGenerator {
 		@Option(names="--start", description="Starting character (default is the space character)")
 		private int start = ' ';
 
+		@Option(names={"-p", "--parallel"}, description="Whether to rasterize the texture in parallel (default is false)")
+		private boolean parallel;
+
+		/**
+		 * Metadata formats.
+		 */
+		private enum Format {
+			YAML,
+			BINARY
+		}
+
+		@Option(names="--packed", description="Whether to tightly pack glyphs rather than a grid of tiles (requires the BINARY format only)")
+		private boolean packed;
+
+		@Option(names="--sdf", description="Whether to generate a signed distance field texture (default is false)")
+		private boolean sdf;
+
+		@Option(names="--spread", description="Distance field spread in pixels (default is 4)")
+		private float spread = 4;
+
+		@Option(names={"-g", "--grayscale"}, description="Whether to generate an 8-bit grayscale coverage texture (default is false)")
+		private boolean grayscale;
+
+		@Option(names="--bc4", description="Whether to also output a BC4 compressed texture (default is false)")
+		private boolean bc4;
+
+		@Option(names="--format", split=",", description="Metadata formats: ${COMPLETION-CANDIDATES} (default is YAML)")
+		private Set<Format> formats = Set.of(Format.YAML);
+
 		@Option(names={"-f", "--filename"}, description="Output filename (defaults to font name and point size)")
 		private String filename;
 
-		@SuppressWarnings("resource")
+		@Option(names={"-b", "--batch"}, description="Manifest of fonts to generate, one per line: name point [style] [filename]")
+		private File manifest;
+
+		@Option(names="--threads", description="Number of concurrent fonts in batch mode (default is the number of processors)")
+		private int threads = Runtime.getRuntime().availableProcessors();
+
 		@Override
 		public Integer call() throws Exception {
+			// Packed glyph regions are only supported by the binary format, the YAML format describes a grid of tiles
+			if(packed && !formats.equals(Set.of(Format.BINARY))) throw new IllegalArgumentException("Packed glyphs require the BINARY metadata format only, i.e. --format BINARY");
+
+			// Generate batch of fonts
+			if(manifest != null) {
+				final int failed = batch();
+				return failed == 0 ? 0 : 1;
+			}
+
+			// Otherwise generate a single font
+			if(name == null) throw new IllegalArgumentException("Expected font name and point size");
+			final Output output = generate(new Spec(name, point, style, filename));
+			System.out.println("Font: " + output.font);
+			if(output.compressed != null) {
+				System.out.printf("BC4 compression: PSNR=%.2fdB%n", output.psnr);
+			}
+			System.out.println("Writing texture font");
+			write(output);
+
+			// Output stats
+			if(kerning) {
+				System.out.println("Kerning pairs: " + output.pairs);
+			}
+
+			return 0;
+		}
+
+		/**
+		 * Generates the fonts listed in the manifest.
+		 * <p>
+		 * Each font is rasterized on a bounded pool of worker threads.
+		 * Encoding the texture image and writing the metadata is delegated to a separate pool such that output overlaps the rasterization of the next font.
+		 * Progress is only output by the writer stage, as a single line per font.
+		 * @return Number of fonts that could not be generated
+		 */
+		private int batch() throws IOException, InterruptedException {
+			// Load manifest
+			final List<Spec> specs = Files
+					.readAllLines(manifest.toPath())
+					.stream()
+					.map(String::strip)
+					.filter(line -> !line.isEmpty() && !line.startsWith("#"))
+					.map(Spec::parse)
+					.toList();
+
+			// Generate fonts
+			final ExecutorService raster = Executors.newFixedThreadPool(oneOrMore(threads));
+			final ExecutorService writer = Executors.newFixedThreadPool(oneOrMore(threads));
+			final AtomicInteger failed = new AtomicInteger();
+			final long start = System.nanoTime();
+			try {
+				final CompletableFuture<?>[] tasks = specs
+						.stream()
+						.map(spec -> CompletableFuture
+								.supplyAsync(() -> generate(spec), raster)
+								.thenAcceptAsync(this::timed, writer)
+								.exceptionally(e -> {
+									failed.incrementAndGet();
+									System.err.println("Failed to generate " + spec.name + " " + spec.point + ": " + e.getCause());
+									return null;
+								})
+						)
+						.toArray(CompletableFuture[]::new);
+
+				CompletableFuture.allOf(tasks).join();
+			}
+			finally {
+				raster.shutdown();
+				writer.shutdown();
+				writer.awaitTermination(1, TimeUnit.MINUTES);
+			}
+
+			// Output stats
+			final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			System.out.printf("Generated %d fonts in %dms, failed=%d%n", specs.size() - failed.get(), elapsed, failed.get());
+
+			return failed.get();
+		}
+
+		/**
+		 * Writes a generated font and outputs its timing.
+		 */
+		private void timed(Output output) {
+			final long start = System.nanoTime();
+			try {
+				write(output);
+			}
+			catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			final long elapsed = System.nanoTime() - start;
+			final var str = new StringBuilder();
+			str.append(String.format("%s: font=%s generate=%dms write=%dms pairs=%d", output.filename, output.font, TimeUnit.NANOSECONDS.toMillis(output.elapsed), TimeUnit.NANOSECONDS.toMillis(elapsed), output.pairs));
+			if(output.compressed != null) {
+				str.append(String.format(" PSNR=%.2fdB", output.psnr));
+			}
+			System.out.println(str);
+		}
+
+		/**
+		 * Generates the texture font image and metadata for the given specification.
+		 */
+		private Output generate(Spec spec) {
 			// Build font
-			final Font font = font();
-			System.out.println("Font: " + font);
+			final long start = System.nanoTime();
+			final Font font = font(spec);
 
 			// Init generator
 			// TODO - background/text colour, optional translucent?
@@ -296,41 +912,65 @@ public class TextureFontGenerator {
 					.size(size)
 					.tiles(tiles)
 					.alias(alias)
-					.start((char) start);
+					.parallel(parallel)
+					.packed(packed)
+					.sdf(sdf)
+					.spread(spread)
+					.grayscale(grayscale)
+					.start((char) this.start);
 
 			// Generate texture font
-			System.out.println("Generating texture font");
 			final Instance instance = generator.new Instance(font);
 			final BufferedImage image = instance.image();
-			final GlyphFont metadata = instance.metadata();
+			final GlyphFont metadata = formats.contains(Format.YAML) ? instance.metadata() : null;
+			final GlyphMetrics glyphs = formats.contains(Format.BINARY) ? instance.glyphs() : null;
+			final int pairs = instance.table().size();
+
+			// Compress texture
+			CompressedTexture compressed = null;
+			double psnr = Double.NaN;
+			if(bc4) {
+				compressed = compress(image);
+				psnr = psnr(image, compressed);
+			}
 
 			// Init filename
-			if(filename == null) {
-				filename = font.getFontName() + font.getSize();
-			}
+			final String filename = spec.filename == null ? font.getFontName() + font.getSize() : spec.filename;
 
+			return new Output(filename, font.toString(), image, metadata, glyphs, compressed, psnr, pairs, System.nanoTime() - start);
+		}
+
+		/**
+		 * Writes the texture font image and metadata.
+		 */
+		private static void write(Output output) throws IOException {
 			// Output image
 			final String ext = "png";
-			System.out.println("Writing texture font");
-			ImageIO.write(image, ext, new File(filename + "." + ext));
+			ImageIO.write(output.image, ext, new File(output.filename + "." + ext));
+			if(output.compressed != null) {
+				try(final OutputStream out = new FileOutputStream(output.filename + ".ktx")) {
+					CompressedTexture.Loader.write(output.compressed, out);
+				}
+			}
 
 			// Output metadata
-			System.out.println("Writing metadata");
-			GlyphFont.Loader.write(metadata, new FileWriter(filename + ".yaml"));
-
-			// Output stats
-			if(kerning) {
-				System.out.println("Kerning pairs: " + instance.pairs);
+			if(output.metadata != null) {
+				try(final Writer out = new FileWriter(output.filename + ".yaml")) {
+					GlyphFont.Loader.write(output.metadata, out);
+				}
+			}
+			if(output.glyphs != null) {
+				try(final OutputStream out = new FileOutputStream(output.filename + ".glyphs")) {
+					GlyphMetrics.Loader.write(output.glyphs, out);
+				}
 			}
-
-			return 0;
 		}
 
 		/**
 		 * Constructs the AWT font.
 		 */
-		private Font font() {
-			final Font font = new Font(name, style.ordinal(), point);
+		private Font font(Spec spec) {
+			final Font font = new Font(spec.name, spec.style.ordinal(), spec.point);
 			if(kerning) {
 				return font.deriveFont(Map.of(TextAttribute.KERNING, TextAttribute.KERNING_ON));
 			}
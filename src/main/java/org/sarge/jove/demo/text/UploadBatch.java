@@ -0,0 +1,169 @@
+package org.sarge.jove.demo.text;
+
+import static org.sarge.lib.util.Check.*;
+
+import java.util.*;
+
+import org.sarge.jove.platform.vulkan.VkCommandBufferUsage;
+import org.sarge.jove.platform.vulkan.core.*;
+
+/**
+ * An <i>upload batch</i> collects transfer commands (e.g. texture and vertex buffer uploads) into a single command buffer that is submitted once.
+ * <p>
+ * Rather than each upload being submitted separately and waiting for the queue to become idle, the commands are recorded in order when the batch is flushed and the batch waits on a single fence.
+ * Uploads are staged in a {@link StagingArena} whose regions are reclaimed once the fence has been signalled.
+ * <p>
+ * Note that the commands are recorded on the graphics queue since the batch can include mipmap generation which requires a graphics queue for blit operations.
+ * <p>
+ * Uploads during rendering (e.g. new glyphs) are submitted by {@link #submit()} without waiting.
+ * The batch is submitted before the work for the frame on the same queue, i.e. the barriers recorded by the uploads synchronise with the rendering commands.
+ * The command buffer and fence of a submission are released once the work has completed and the staging arena no longer refers to the fence, i.e. this batch is the owner of the fences.
+ * <p>
+ * Usage:
+ * <pre>
+ * UploadBatch batch = new UploadBatch(graphics, arena);
+ *
+ * // Add uploads
+ * Region region = arena.write(data);
+ * batch.add(region.copy(buffer));
+ *
+ * // Submit and wait
+ * batch.flush();
+ * </pre>
+ * <p>
+ * @author Sarge
+ */
+public class UploadBatch {
+	/**
+	 * A submitted batch that has not been released.
+	 */
+	private record Pending(Fence fence, Command.Buffer buffer) {
+		/**
+		 * Releases this submission.
+		 */
+		void release() {
+			fence.destroy();
+			buffer.free();
+		}
+	}
+
+	private final Command.Pool pool;
+	private final List<Command> commands = new ArrayList<>();
+	private final StagingArena arena;
+	private final Deque<Pending> pending = new ArrayDeque<>();
+
+	/**
+	 * Constructor.
+	 * @param pool			Command pool
+	 * @param arena			Staging arena
+	 */
+	public UploadBatch(Command.Pool pool, StagingArena arena) {
+		this.pool = notNull(pool);
+		this.arena = notNull(arena);
+	}
+
+	/**
+	 * @return Whether this batch is empty
+	 */
+	public synchronized boolean isEmpty() {
+		return commands.isEmpty();
+	}
+
+	/**
+	 * Adds a command to this batch.
+	 * @param cmd Command
+	 */
+	public synchronized UploadBatch add(Command cmd) {
+		commands.add(notNull(cmd));
+		return this;
+	}
+
+	/**
+	 * Submits the commands in this batch as a single command buffer and waits for completion of all pending submissions.
+	 * Does nothing if the batch is empty.
+	 */
+	public synchronized void flush() {
+		// Ignore empty batch
+		if(commands.isEmpty()) {
+			return;
+		}
+
+		// Submit and wait
+		enqueue();
+		for(Pending p : pending) {
+			p.fence().waitReady();
+		}
+
+		// Release resources
+		release();
+	}
+
+	/**
+	 * Submits the commands in this batch as a single command buffer without waiting for completion.
+	 * Previous submissions that have completed are released.
+	 * Does nothing if the batch is empty.
+	 */
+	public synchronized void submit() {
+		// Release completed submissions
+		release();
+
+		// Ignore empty batch
+		if(commands.isEmpty()) {
+			return;
+		}
+
+		// Submit batch
+		enqueue();
+	}
+
+	/**
+	 * Submits the commands in this batch and associates the staging regions with the fence of the submission.
+	 */
+	private void enqueue() {
+		final Command.Buffer buffer = record();
+		final Fence fence = Fence.create(pool.device());
+		Work.of(buffer).submit(fence);
+		arena.submit(fence);
+		pending.addLast(new Pending(fence, buffer));
+	}
+
+	/**
+	 * Releases completed submissions in order.
+	 * The staging arena is reclaimed first so that a fence is only destroyed once the arena has dropped it.
+	 */
+	private void release() {
+		arena.reclaim();
+		while(!pending.isEmpty()) {
+			final Fence fence = pending.peekFirst().fence();
+			if(!fence.signalled() || arena.isPending(fence)) {
+				break;
+			}
+			pending.removeFirst().release();
+		}
+	}
+
+	/**
+	 * Records the commands in this batch.
+	 */
+	private Command.Buffer record() {
+		final Command.Buffer buffer = pool.allocate();
+		buffer.begin(VkCommandBufferUsage.ONE_TIME_SUBMIT);
+		for(Command cmd : commands) {
+			buffer.add(cmd);
+		}
+		buffer.end();
+		commands.clear();
+		return buffer;
+	}
+
+	/**
+	 * Waits for pending submissions and releases this batch.
+	 */
+	public synchronized void destroy() {
+		for(Pending p : pending) {
+			p.fence().waitReady();
+		}
+		release();
+		commands.clear();
+	}
+}
@@ -1,11 +1,21 @@
 package org.sarge.jove.demo.text;
 
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.sarge.jove.common.Bufferable;
+import org.sarge.jove.demo.text.GlyphInstanceBuilder.Instances;
+import org.sarge.jove.demo.text.StagingArena.Region;
 import org.sarge.jove.io.*;
 import org.sarge.jove.model.*;
 import org.sarge.jove.platform.vulkan.*;
 import org.sarge.jove.platform.vulkan.core.*;
 import org.sarge.jove.platform.vulkan.memory.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.*;
+import org.springframework.core.annotation.Order;
 
 @Configuration
 public class VertexBufferConfiguration {
@@ -15,6 +25,13 @@ public class VertexBufferConfiguration {
 		return loader.load("DemoFont.yaml");
 	}
 
+	@Bean
+	static GlyphMetrics metrics(DataSource classpath) throws IOException {
+		try(final InputStream in = classpath.input("DemoFont.glyphs")) {
+			return new GlyphMetrics.Loader().load(in);
+		}
+	}
+
 	@Bean
 	static Mesh mesh(GlyphFont font) {
 		return new GlyphMeshBuilder(font)
@@ -25,9 +42,21 @@ public class VertexBufferConfiguration {
 	}
 
 	@Bean
-	static VertexBuffer vbo(LogicalDevice dev, Allocator allocator, Mesh mesh, Command.Pool graphics) {
-		// Create staging buffer
-		final VulkanBuffer staging = VulkanBuffer.staging(dev, allocator, mesh.vertices());
+	@ConditionalOnProperty("text.instanced")
+	static Instances instances(GlyphMetrics metrics) {
+		return new GlyphInstanceBuilder(metrics)
+				.scale(2.5f)
+				.add("frog AW WA")
+				.build();
+	}
+
+	@Bean
+	static VertexBuffer vbo(LogicalDevice dev, Allocator allocator, Mesh mesh, Optional<Instances> instances, StagingArena arena, UploadBatch uploads) {
+		// Select instance records or mesh vertices
+		final Bufferable data = instances.map(Instances::data).orElseGet(mesh::vertices);
+
+		// Write to staging arena
+		final Region staging = arena.write(data);
 
 		// Init VBO properties
 		final var props = new MemoryProperties.Builder<VkBufferUsageFlag>()
@@ -40,10 +69,72 @@ public class VertexBufferConfiguration {
 		final VulkanBuffer buffer = VulkanBuffer.create(dev, allocator, staging.length(), props);
 
 		// Copy to destination
-		staging.copy(buffer).submit(graphics);
-		staging.destroy();
+		uploads.add(staging.copy(buffer));
 
 		// Create VBO
 		return new VertexBuffer(buffer);
 	}
+
+	@Bean(destroyMethod = "destroy")
+	@ConditionalOnProperty("text.batch")
+	static TextBatch batch(LogicalDevice dev, Allocator allocator, GlyphMetrics metrics, StagingArena arena, UploadBatch uploads, @Value("${text.batch.labels:100}") int labels) {
+		// Create batch
+		final TextBatch batch = TextBatch.create(dev, allocator, metrics, labels, labels * 16);
+
+		// Add a grid of labels
+		final int cols = (int) Math.ceil(Math.sqrt(labels));
+		final float step = 2f / cols;
+		for(int n = 0; n < labels; ++n) {
+			final float x = -1 + (n % cols) * step;
+			final float y = -1 + (n / cols) * step;
+			batch.add("label " + n, x, y, 1);
+		}
+
+		// Upload labels
+		uploads.add(batch.upload(arena));
+
+		return batch;
+	}
+
+	@Bean
+	@Order(1)
+	@ConditionalOnProperty("text.batch")
+	static FrameSequence.Task labels(TextBatch batch, StagingArena arena, UploadBatch uploads) {
+		return index -> {
+			// Upload labels changed since the previous frame
+			if(batch.isDirty()) {
+				uploads.add(batch.upload(arena));
+			}
+		};
+	}
+
+	@Bean(destroyMethod = "destroy")
+	@ConditionalOnProperty("text.dynamic")
+	static DynamicTextBuffer dynamic(LogicalDevice dev, Allocator allocator, @Value("${render.frames:" + PresentationConfiguration.FRAMES + "}") int frames, @Value("${text.dynamic.capacity:65536}") int capacity) {
+		return DynamicTextBuffer.create(dev, allocator, frames, capacity);
+	}
+
+	@Bean
+	@ConditionalOnProperty("text.layout.cache")
+	static LayoutCache layouts(@Value("${text.layout.cache.capacity:1048576}") long capacity) {
+		return new LayoutCache(capacity);
+	}
+
+	@Bean
+	@Order(0)
+	@ConditionalOnProperty("text.dynamic")
+	static DynamicText text(DynamicTextBuffer buffer, GlyphMetrics metrics, Optional<GlyphCache> cache, Optional<LayoutCache> layouts, @Value("${text.dynamic.title:Dynamic text}") String title) {
+		// Select glyph cache or static glyphs
+		if(cache.isPresent() && layouts.isPresent()) throw new IllegalStateException("Layout cache cannot be used with the glyph cache");
+		final GlyphSource glyphs = cache.<GlyphSource>map(c -> c).orElse(metrics);
+
+		// Layout text below the static mesh
+		final GlyphWriter writer = new GlyphWriter(glyphs)
+				.scale(1.5f)
+				.origin(-1, 0.5f);
+
+		// Add title and frame counter
+		final AtomicLong frames = new AtomicLong();
+		return new DynamicText(buffer, writer, List.of(() -> title, () -> "frame " + frames.incrementAndGet()), layouts.orElse(null));
+	}
 }
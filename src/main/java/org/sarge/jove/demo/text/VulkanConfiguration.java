@@ -1,5 +1,7 @@
 package org.sarge.jove.demo.text;
 
+import java.util.Optional;
+
 import org.sarge.jove.platform.desktop.Desktop;
 import org.sarge.jove.platform.vulkan.core.*;
 import org.sarge.jove.platform.vulkan.memory.Allocator;
@@ -14,13 +16,16 @@ class VulkanConfiguration {
 	}
 
 	@Bean
-	static Instance instance(VulkanLibrary lib, Desktop desktop) {
-		return new Instance.Builder()
+	static Instance instance(VulkanLibrary lib, Optional<Desktop> desktop) {
+		final var builder = new Instance.Builder()
 				.name("TextDemo")
 				.extension(Handler.EXTENSION)
-				.extensions(desktop.extensions())
-				.layer(ValidationLayer.STANDARD_VALIDATION)
-				.build(lib);
+				.layer(ValidationLayer.STANDARD_VALIDATION);
+
+		// Add surface extensions unless rendering offscreen
+		desktop.map(Desktop::extensions).ifPresent(builder::extensions);
+
+		return builder.build(lib);
 	}
 
 	@Bean
@@ -2,10 +2,14 @@
 
 layout(binding = 0) uniform sampler2D font;
 
+layout(binding = 1) uniform Text {
+    vec4 colour;
+};
+
 layout(location = 0) in vec2 inCoord;
 
 layout(location = 0) out vec4 outColour;
 
 void main(void) {
-    outColour = texture(font, inCoord);
+    outColour = vec4(colour.rgb, colour.a * texture(font, inCoord).a);
 }
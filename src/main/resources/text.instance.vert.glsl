@@ -0,0 +1,24 @@
+#version 450
+
+layout(constant_id = 0) const uint TILES = 16;
+
+layout(location=0) in vec3 inGlyph;
+layout(location=1) in uint inTile;
+
+layout(location=0) out vec2 outTexCoord;
+
+const vec2 QUAD[4] = vec2[](
+    vec2(0, 0),
+    vec2(0, 1),
+    vec2(1, 0),
+    vec2(1, 1)
+);
+
+void main() {
+    vec2 corner = QUAD[gl_VertexIndex];
+    float size = inGlyph.z / TILES;
+    gl_Position = vec4(inGlyph.xy + corner * size, 0.0, 1.0);
+
+    vec2 cell = vec2(inTile % TILES, inTile / TILES);
+    outTexCoord = (cell + corner) / TILES;
+}
@@ -0,0 +1,18 @@
+#version 450 core
+
+layout(binding = 0) uniform sampler2D font;
+
+layout(binding = 1) uniform Text {
+    vec4 colour;
+};
+
+layout(location = 0) in vec2 inCoord;
+
+layout(location = 0) out vec4 outColour;
+
+void main(void) {
+    float dist = texture(font, inCoord).a;
+    float width = fwidth(dist);
+    float alpha = smoothstep(0.5 - width, 0.5 + width, dist);
+    outColour = vec4(colour.rgb, colour.a * alpha);
+}
@@ -0,0 +1,81 @@
+package org.sarge.jove.demo.text;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+
+class DistanceFieldTest {
+	private static final int SIZE = 9;
+	private static final float EPSILON = 0.0001f;
+
+	private byte[] coverage;
+
+	@BeforeEach
+	void before() {
+		// Create a 3x3 square centred in the image
+		coverage = new byte[SIZE * SIZE];
+		for(int y = 3; y < 6; ++y) {
+			for(int x = 3; x < 6; ++x) {
+				coverage[index(x, y)] = (byte) 0xFF;
+			}
+		}
+	}
+
+	private static int index(int x, int y) {
+		return x + y * SIZE;
+	}
+
+	@Test
+	void inside() {
+		final float[] field = DistanceField.transform(coverage, SIZE, SIZE, false);
+		assertEquals(-2, field[index(4, 4)], EPSILON);
+		assertEquals(-1, field[index(3, 4)], EPSILON);
+		assertEquals(-1, field[index(3, 3)], EPSILON);
+	}
+
+	@Test
+	void outside() {
+		final float[] field = DistanceField.transform(coverage, SIZE, SIZE, false);
+		assertEquals(1, field[index(2, 4)], EPSILON);
+		assertEquals(3, field[index(0, 4)], EPSILON);
+		assertEquals((float) Math.sqrt(2), field[index(2, 2)], EPSILON);
+		assertEquals((float) Math.sqrt(18), field[index(0, 0)], EPSILON);
+	}
+
+	@Test
+	void spread() {
+		// Distances increase by one pixel per pixel away from the edge
+		final float[] field = DistanceField.transform(coverage, SIZE, SIZE, false);
+		for(int x = 0; x < 3; ++x) {
+			assertEquals(3 - x, field[index(x, 4)], EPSILON);
+			assertEquals(x + 1, field[index(x + 6, 4)], EPSILON);
+		}
+	}
+
+	@Test
+	void threshold() {
+		coverage[index(0, 0)] = (byte) 0x80;
+		coverage[index(8, 8)] = (byte) 0x7F;
+		final float[] field = DistanceField.transform(coverage, SIZE, SIZE, false);
+		assertEquals(-1, field[index(0, 0)], EPSILON);
+		assertEquals((float) Math.sqrt(18), field[index(8, 8)], EPSILON);
+	}
+
+	@Test
+	void parallel() {
+		assertArrayEquals(DistanceField.transform(coverage, SIZE, SIZE, false), DistanceField.transform(coverage, SIZE, SIZE, true));
+	}
+
+	@Test
+	void rectangular() {
+		final byte[] line = new byte[5];
+		line[0] = (byte) 0xFF;
+		final float[] field = DistanceField.transform(line, 5, 1, false);
+		assertArrayEquals(new float[]{-1, 1, 2, 3, 4}, field, EPSILON);
+	}
+
+	@Test
+	void invalid() {
+		assertThrows(IllegalArgumentException.class, () -> DistanceField.transform(new byte[3], 2, 2, false));
+	}
+}
@@ -0,0 +1,176 @@
+package org.sarge.jove.demo.text;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import org.junit.jupiter.api.*;
+
+class KerningTableTest {
+	private KerningTable table;
+
+	@BeforeEach
+	void before() {
+		table = new KerningTable.Builder()
+				.add('W', 'A', 0.2f)
+				.add('A', 'V', 0.1f)
+				.add('A', 'W', 0.3f)
+				.build();
+	}
+
+	/**
+	 * @return Pairs of the given table in order
+	 */
+	private static List<String> pairs(KerningTable table) {
+		final List<String> pairs = new ArrayList<>();
+		table.forEach((left, right, advance) -> pairs.add(Character.toString(left) + Character.toString(right)));
+		return pairs;
+	}
+
+	@Test
+	void constructor() {
+		assertEquals(3, table.size());
+	}
+
+	@Test
+	void contains() {
+		assertEquals(true, table.contains('A', 'V'));
+		assertEquals(false, table.contains('V', 'A'));
+	}
+
+	@Test
+	void advance() {
+		assertEquals(0.1f, table.advance('A', 'V', 1));
+		assertEquals(0.3f, table.advance('A', 'W', 1));
+		assertEquals(0.2f, table.advance('W', 'A', 1));
+	}
+
+	@Test
+	void advanceNotKerned() {
+		assertEquals(1, table.advance('V', 'A', 1));
+	}
+
+	@Test
+	void empty() {
+		assertEquals(KerningTable.EMPTY, new KerningTable.Builder().build());
+		assertEquals(0, KerningTable.EMPTY.size());
+	}
+
+	@Test
+	void equals() {
+		assertEquals(table, table);
+		assertEquals(table, new KerningTable.Builder().add('A', 'W', 0.3f).add('W', 'A', 0.2f).add('A', 'V', 0.1f).build());
+		assertNotEquals(table, null);
+		assertNotEquals(table, KerningTable.EMPTY);
+	}
+
+	@Test
+	void of() {
+		final int[] dense = {KerningEngine.NONE, 5, KerningEngine.NONE, -3};
+		final KerningTable table = KerningTable.of(dense, 'a', 2, 10);
+		assertEquals(2, table.size());
+		assertEquals(0.5f, table.advance('a', 'b', 0));
+		assertEquals(-0.3f, table.advance('b', 'b', 0));
+		assertEquals(false, table.contains('a', 'a'));
+	}
+
+	@Test
+	void ofInvalidLength() {
+		assertThrows(IllegalArgumentException.class, () -> KerningTable.of(new int[3], 'a', 2, 10));
+	}
+
+	@Nested
+	class BuilderTests {
+		private KerningTable.Builder builder;
+
+		@BeforeEach
+		void before() {
+			builder = new KerningTable.Builder();
+		}
+
+		@Test
+		void order() {
+			assertEquals(List.of("AV", "AW", "WA"), pairs(table));
+		}
+
+		@Test
+		void supplementary() {
+			// Note that pairs with a left-hand code-point above U+FFFFF set the sign bit of the combined sort value
+			final KerningTable table = builder
+					.add(0x10FFFF, 'A', 3)
+					.add('A', 'B', 1)
+					.add(0x100000, 'Z', 2)
+					.build();
+
+			final List<Integer> left = new ArrayList<>();
+			table.forEach((l, r, advance) -> left.add(l));
+			assertEquals(List.of((int) 'A', 0x100000, 0x10FFFF), left);
+			assertEquals(1, table.advance('A', 'B', 0));
+			assertEquals(2, table.advance(0x100000, 'Z', 0));
+			assertEquals(3, table.advance(0x10FFFF, 'A', 0));
+		}
+
+		@Test
+		void grow() {
+			for(int n = 99; n >= 0; --n) {
+				builder.add(n, n + 1, n);
+			}
+			final KerningTable table = builder.build();
+			assertEquals(100, table.size());
+			assertEquals(50, table.advance(50, 51, 0));
+		}
+
+		@Test
+		void duplicate() {
+			builder.add('A', 'V', 1).add('W', 'A', 2).add('A', 'V', 3);
+			assertThrows(IllegalArgumentException.class, () -> builder.build());
+		}
+
+		@Test
+		void invalid() {
+			assertThrows(IllegalArgumentException.class, () -> builder.add(-1, 'A', 0));
+			assertThrows(IllegalArgumentException.class, () -> builder.add('A', Character.MAX_CODE_POINT + 1, 0));
+		}
+	}
+
+	@Nested
+	class PersistenceTests {
+		private static ByteBuffer write(KerningTable table) throws IOException {
+			final var out = new ByteArrayOutputStream();
+			table.write(new DataOutputStream(out));
+			return ByteBuffer.wrap(out.toByteArray());
+		}
+
+		@Test
+		void read() throws IOException {
+			final ByteBuffer bb = write(table);
+			assertEquals(table, KerningTable.read(bb));
+			assertEquals(false, bb.hasRemaining());
+		}
+
+		@Test
+		void readEmpty() throws IOException {
+			assertEquals(KerningTable.EMPTY, KerningTable.read(write(KerningTable.EMPTY)));
+		}
+
+		@Test
+		void readInvalidSize() {
+			assertThrows(IllegalArgumentException.class, () -> KerningTable.read(ByteBuffer.allocate(Integer.BYTES).putInt(0, -1)));
+			assertThrows(IllegalArgumentException.class, () -> KerningTable.read(ByteBuffer.allocate(Integer.BYTES).putInt(0, 1)));
+		}
+
+		@Test
+		void readNotOrdered() {
+			final ByteBuffer bb = ByteBuffer.allocate(Integer.BYTES + 2 * (Long.BYTES + Float.BYTES));
+			bb.putInt(2);
+			bb.putLong(KerningTable.key('B', 'A'));
+			bb.putLong(KerningTable.key('A', 'B'));
+			bb.putFloat(1);
+			bb.putFloat(2);
+			bb.flip();
+			assertThrows(IllegalArgumentException.class, () -> KerningTable.read(bb));
+		}
+	}
+}
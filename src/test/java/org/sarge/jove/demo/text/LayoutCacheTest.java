@@ -0,0 +1,108 @@
+package org.sarge.jove.demo.text;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.*;
+
+import org.junit.jupiter.api.*;
+
+class LayoutCacheTest {
+	private static final int GLYPH = GlyphWriter.VERTICES * GlyphWriter.STRIDE;
+
+	private LayoutCache cache;
+	private GlyphWriter writer;
+	private ByteBuffer bb;
+
+	@BeforeEach
+	void before() {
+		final var metrics = new GlyphMetrics('a', 2, new float[]{0.25f, 0.5f, 0.25f, 0.5f}, KerningTable.EMPTY);
+		writer = new GlyphWriter(metrics);
+		cache = new LayoutCache(2 * GLYPH);
+		bb = ByteBuffer.allocate(8 * GLYPH).order(ByteOrder.nativeOrder());
+	}
+
+	@Test
+	void constructor() {
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.count());
+		assertEquals(0, cache.hits());
+		assertEquals(0, cache.misses());
+	}
+
+	@Test
+	void miss() {
+		assertEquals(GlyphWriter.VERTICES, cache.write(writer, "a", bb, 0));
+		assertEquals(1, cache.count());
+		assertEquals(GLYPH, cache.size());
+		assertEquals(0, cache.hits());
+		assertEquals(1, cache.misses());
+	}
+
+	@Test
+	void hit() {
+		// Layout and cache text
+		cache.write(writer, "a", bb, 0);
+
+		// Copy cached layout
+		assertEquals(GlyphWriter.VERTICES, cache.write(writer, "a", bb, GLYPH));
+		assertEquals(1, cache.hits());
+		assertEquals(1, cache.misses());
+		assertEquals(bb.slice(0, GLYPH), bb.slice(GLYPH, GLYPH));
+	}
+
+	@Test
+	void origin() {
+		cache.write(writer, "a", bb, 0);
+		writer.origin(0, 0);
+		cache.write(writer, "a", bb, 0);
+		assertEquals(0, cache.hits());
+		assertEquals(2, cache.misses());
+		assertEquals(2, cache.count());
+	}
+
+	@Test
+	void evict() {
+		// Fill cache and touch the oldest entry
+		cache.write(writer, "a", bb, 0);
+		cache.write(writer, "b", bb, 0);
+		cache.write(writer, "a", bb, 0);
+
+		// Add another entry which should evict the least-recently-used
+		cache.write(writer, "c", bb, 0);
+		assertEquals(2, cache.count());
+		assertEquals(2 * GLYPH, cache.size());
+
+		// Check evicted entry
+		cache.write(writer, "a", bb, 0);
+		assertEquals(2, cache.hits());
+		cache.write(writer, "b", bb, 0);
+		assertEquals(2, cache.hits());
+		assertEquals(4, cache.misses());
+	}
+
+	@Test
+	void evictMultiple() {
+		cache.write(writer, "a", bb, 0);
+		cache.write(writer, "b", bb, 0);
+		cache.write(writer, "cd", bb, 0);
+		assertEquals(1, cache.count());
+		assertEquals(2 * GLYPH, cache.size());
+	}
+
+	@Test
+	void tooLarge() {
+		assertEquals(3 * GlyphWriter.VERTICES, cache.write(writer, "abc", bb, 0));
+		assertEquals(0, cache.count());
+		assertEquals(0, cache.size());
+		cache.write(writer, "abc", bb, 0);
+		assertEquals(2, cache.misses());
+	}
+
+	@Test
+	void clear() {
+		cache.write(writer, "a", bb, 0);
+		cache.clear();
+		assertEquals(0, cache.count());
+		assertEquals(0, cache.size());
+	}
+}
@@ -0,0 +1,112 @@
+package org.sarge.jove.demo.text;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.*;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.*;
+
+class SkylinePackerTest {
+	private SkylinePacker packer;
+
+	@BeforeEach
+	void before() {
+		packer = new SkylinePacker(32, 32);
+	}
+
+	@Test
+	void add() {
+		assertEquals(new Point(0, 0), packer.add(10, 10));
+		assertEquals(new Point(10, 0), packer.add(10, 20));
+		assertEquals(new Point(20, 0), packer.add(10, 5));
+	}
+
+	@Test
+	void lowest() {
+		packer.add(10, 10);
+		packer.add(10, 20);
+		packer.add(10, 5);
+		assertEquals(new Point(20, 5), packer.add(10, 10));
+	}
+
+	@Test
+	void spanning() {
+		packer.add(8, 4);
+		packer.add(8, 12);
+		assertEquals(new Point(0, 12), packer.add(24, 4));
+	}
+
+	@Test
+	void merge() {
+		packer.add(16, 8);
+		packer.add(16, 8);
+		assertEquals(new Point(0, 8), packer.add(32, 8));
+	}
+
+	@Test
+	void full() {
+		assertEquals(new Point(0, 0), packer.add(32, 32));
+		assertEquals(null, packer.add(1, 1));
+	}
+
+	@Test
+	void tooWide() {
+		assertEquals(null, packer.add(33, 1));
+	}
+
+	@Test
+	void tooHigh() {
+		packer.add(16, 30);
+		packer.add(16, 30);
+		assertEquals(null, packer.add(4, 4));
+	}
+
+	@Nested
+	class PackTests {
+		/**
+		 * Asserts that the packed rectangles are within the given area and do not overlap.
+		 */
+		private static void verify(Dimension[] sizes, Point[] pos, int dim) {
+			final var area = new Rectangle(dim, dim);
+			for(int n = 0; n < sizes.length; ++n) {
+				final var r = new Rectangle(pos[n], sizes[n]);
+				assertEquals(true, area.contains(r));
+				for(int m = 0; m < n; ++m) {
+					assertEquals(false, r.intersects(new Rectangle(pos[m], sizes[m])));
+				}
+			}
+		}
+
+		@Test
+		void pack() {
+			final Dimension[] sizes = new Dimension[4];
+			Arrays.fill(sizes, new Dimension(8, 8));
+			final Point[] pos = new Point[sizes.length];
+			assertEquals(16, SkylinePacker.pack(sizes, 64, pos));
+			verify(sizes, pos, 16);
+		}
+
+		@Test
+		void grow() {
+			final Dimension[] sizes = {new Dimension(12, 12), new Dimension(12, 4), new Dimension(12, 12)};
+			final Point[] pos = new Point[sizes.length];
+			assertEquals(32, SkylinePacker.pack(sizes, 64, pos));
+			verify(sizes, pos, 32);
+		}
+
+		@Test
+		void empty() {
+			final Dimension[] sizes = {new Dimension(4, 4), new Dimension(0, 8)};
+			final Point[] pos = new Point[sizes.length];
+			SkylinePacker.pack(sizes, 64, pos);
+			assertEquals(new Point(), pos[1]);
+		}
+
+		@Test
+		void overflow() {
+			final Dimension[] sizes = {new Dimension(40, 40), new Dimension(40, 40)};
+			assertThrows(IllegalArgumentException.class, () -> SkylinePacker.pack(sizes, 64, new Point[2]));
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package org.sarge.jove.demo.text;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.*;
+import org.sarge.jove.demo.text.StagingArena.Region;
+import org.sarge.jove.platform.vulkan.core.*;
+
+class StagingArenaTest {
+	private StagingArena arena;
+	private VulkanBuffer buffer;
+
+	@BeforeEach
+	void before() {
+		buffer = mock(VulkanBuffer.class);
+		when(buffer.length()).thenReturn(64L);
+		when(buffer.buffer()).thenReturn(ByteBuffer.allocate(64));
+		arena = new StagingArena(buffer);
+	}
+
+	private static Fence fence(boolean signalled) {
+		final Fence fence = mock(Fence.class);
+		when(fence.signalled()).thenReturn(signalled);
+		return fence;
+	}
+
+	@Test
+	void constructor() {
+		assertEquals(buffer, arena.buffer());
+		assertEquals(64, arena.capacity());
+		assertEquals(0, arena.used());
+		assertEquals(0, arena.mark());
+		assertEquals(0, arena.allocations());
+		assertEquals(0, arena.stalls());
+	}
+
+	@Test
+	void allocate() {
+		final Region region = arena.allocate(10, 16);
+		assertEquals(buffer, region.buffer());
+		assertEquals(0, region.offset());
+		assertEquals(10, region.length());
+		assertEquals(10, region.data().capacity());
+		assertEquals(10, arena.used());
+		assertEquals(1, arena.allocations());
+	}
+
+	@Test
+	void align() {
+		arena.allocate(10, 16);
+		assertEquals(16, arena.allocate(8, 16).offset());
+		assertEquals(24, arena.used());
+		assertEquals(24, arena.mark());
+	}
+
+	@Test
+	void tooLarge() {
+		assertThrows(IllegalArgumentException.class, () -> arena.allocate(65, 1));
+	}
+
+	@Test
+	void exhausted() {
+		arena.allocate(64, 1);
+		assertThrows(IllegalStateException.class, () -> arena.allocate(1, 1));
+	}
+
+	@Test
+	void submit() {
+		final Fence fence = fence(false);
+		arena.allocate(16, 1);
+		arena.submit(fence);
+		assertEquals(true, arena.isPending(fence));
+	}
+
+	@Test
+	void submitEmpty() {
+		final Fence fence = fence(false);
+		arena.submit(fence);
+		assertEquals(false, arena.isPending(fence));
+	}
+
+	@Test
+	void reclaim() {
+		final Fence fence = fence(true);
+		arena.allocate(32, 1);
+		arena.submit(fence);
+		arena.reclaim();
+		assertEquals(false, arena.isPending(fence));
+		assertEquals(0, arena.used());
+		assertEquals(32, arena.mark());
+	}
+
+	@Test
+	void reclaimOrder() {
+		// Submit two batches
+		final Fence first = fence(false);
+		final Fence second = fence(true);
+		arena.allocate(16, 1);
+		arena.submit(first);
+		arena.allocate(16, 1);
+		arena.submit(second);
+
+		// Check later submission is not reclaimed before the first
+		arena.reclaim();
+		assertEquals(true, arena.isPending(first));
+		assertEquals(true, arena.isPending(second));
+		assertEquals(32, arena.used());
+
+		// Reclaim both once the first has completed
+		when(first.signalled()).thenReturn(true);
+		arena.reclaim();
+		assertEquals(false, arena.isPending(first));
+		assertEquals(false, arena.isPending(second));
+		assertEquals(0, arena.used());
+	}
+
+	@Test
+	void wrap() {
+		// Allocate most of the ring
+		final Fence first = fence(false);
+		final Fence second = fence(false);
+		arena.allocate(32, 1);
+		arena.submit(first);
+		arena.allocate(16, 1);
+		arena.submit(second);
+
+		// Complete first submission and allocate a region that does not fit at the end of the ring
+		when(first.signalled()).thenReturn(true);
+		final Region region = arena.allocate(24, 1);
+		assertEquals(0, region.offset());
+		assertEquals(64 - 32 + 24, arena.used());
+		assertEquals(0, arena.stalls());
+	}
+
+	@Test
+	void stall() {
+		final Fence fence = mock(Fence.class);
+		when(fence.signalled()).thenReturn(false, true);
+		arena.allocate(64, 1);
+		arena.submit(fence);
+		assertEquals(0, arena.allocate(16, 1).offset());
+		verify(fence).waitReady();
+		assertEquals(1, arena.stalls());
+	}
+
+	@Test
+	void destroy() {
+		arena.destroy();
+		verify(buffer).destroy();
+	}
+}
@@ -0,0 +1,123 @@
+package org.sarge.jove.demo.text;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.junit.jupiter.api.*;
+import org.sarge.jove.demo.text.TextBatch.Label;
+import org.sarge.jove.platform.vulkan.core.VulkanBuffer;
+
+class TextBatchTest {
+	private static final int SLOTS = 8;
+	private static final int CAPACITY = 8;
+
+	private TextBatch batch;
+
+	@BeforeEach
+	void before() {
+		final var metrics = new GlyphMetrics('a', 2, new float[]{0.25f, 0.5f, 0.25f, 0.5f}, KerningTable.EMPTY);
+		final VulkanBuffer instances = mock(VulkanBuffer.class);
+		final VulkanBuffer indirect = mock(VulkanBuffer.class);
+		when(instances.length()).thenReturn((long) CAPACITY * GlyphInstanceBuilder.STRIDE);
+		when(indirect.length()).thenReturn((long) SLOTS * TextBatch.COMMAND);
+		batch = new TextBatch(metrics, instances, indirect, SLOTS, CAPACITY);
+	}
+
+	/**
+	 * Fills the batch with four labels of two glyphs each.
+	 */
+	private Label[] fill() {
+		final Label[] labels = new Label[4];
+		for(int n = 0; n < labels.length; ++n) {
+			labels[n] = batch.add("ab", 0, 0, 1);
+		}
+		return labels;
+	}
+
+	@Test
+	void constructor() {
+		assertEquals(SLOTS, batch.slots());
+		assertEquals(0, batch.size());
+		assertEquals(true, batch.isDirty());
+	}
+
+	@Test
+	void add() {
+		final Label label = batch.add("abc", 0, 0, 1);
+		assertEquals(0, label.slot());
+		assertEquals(3, label.count());
+		assertEquals(1, batch.size());
+	}
+
+	@Test
+	void addFull() {
+		fill();
+		assertThrows(IllegalStateException.class, () -> batch.add("a", 0, 0, 1));
+	}
+
+	@Test
+	void remove() {
+		final Label[] labels = fill();
+		batch.remove(labels[1]);
+		assertEquals(3, batch.size());
+		assertEquals(labels[1].slot(), batch.add("a", 0, 0, 1).slot());
+	}
+
+	@Test
+	void removeTwice() {
+		final Label label = batch.add("a", 0, 0, 1);
+		batch.remove(label);
+		assertThrows(IllegalArgumentException.class, () -> batch.remove(label));
+	}
+
+	@Nested
+	class FreeRangeTests {
+		@Test
+		void mergeFollowing() {
+			final Label[] labels = fill();
+			batch.remove(labels[2]);
+			batch.remove(labels[1]);
+			assertEquals(4, batch.add("abcd", 0, 0, 1).count());
+		}
+
+		@Test
+		void mergePreceding() {
+			final Label[] labels = fill();
+			batch.remove(labels[1]);
+			batch.remove(labels[2]);
+			assertEquals(4, batch.add("abcd", 0, 0, 1).count());
+		}
+
+		@Test
+		void notAdjacent() {
+			final Label[] labels = fill();
+			batch.remove(labels[0]);
+			batch.remove(labels[2]);
+			assertThrows(IllegalStateException.class, () -> batch.add("abc", 0, 0, 1));
+		}
+
+		@Test
+		void mergeAll() {
+			final Label[] labels = fill();
+			batch.remove(labels[3]);
+			batch.remove(labels[0]);
+			batch.remove(labels[2]);
+			batch.remove(labels[1]);
+			assertEquals(CAPACITY, batch.add("abcdabcd", 0, 0, 1).count());
+		}
+
+		@Test
+		void update() {
+			final Label[] labels = fill();
+			batch.remove(labels[1]);
+			batch.update(labels[0], "abcd");
+			assertEquals(4, labels[0].count());
+		}
+
+		@Test
+		void updateNoSpace() {
+			final Label[] labels = fill();
+			assertThrows(IllegalStateException.class, () -> batch.update(labels[0], "abc"));
+		}
+	}
+}